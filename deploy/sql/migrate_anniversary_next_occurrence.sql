@@ -0,0 +1,20 @@
+-- 生产环境迁移脚本：纪念日下一次发生日期
+-- 说明：即将到来的纪念日改为按 (space_id, next_occurrence_date) 范围查询。
+-- 每年重复的按原始日期换算到今年/明年（2 月 29 日在平年为 2 月 28 日），不重复且已过去的为空。
+-- 应用启动和每日零点后也会补算为空或已过期的记录。
+
+ALTER TABLE `anniversary` ADD COLUMN `next_occurrence_date` DATE DEFAULT NULL COMMENT '下一次发生日期' AFTER `icon`;
+
+UPDATE `anniversary`
+SET `next_occurrence_date` = CASE
+    WHEN `repeat_yearly` = 1 THEN
+        CASE
+            WHEN DATE_ADD(`date`, INTERVAL (YEAR(CURDATE()) - YEAR(`date`)) YEAR) >= CURDATE()
+                THEN DATE_ADD(`date`, INTERVAL (YEAR(CURDATE()) - YEAR(`date`)) YEAR)
+            ELSE DATE_ADD(`date`, INTERVAL (YEAR(CURDATE()) - YEAR(`date`) + 1) YEAR)
+        END
+    WHEN `date` >= CURDATE() THEN `date`
+    ELSE NULL
+END;
+
+ALTER TABLE `anniversary` ADD INDEX `idx_space_next_occurrence` (`space_id`, `next_occurrence_date`);
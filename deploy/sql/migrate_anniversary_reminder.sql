@@ -0,0 +1,4 @@
+-- 生产环境迁移脚本：纪念日提醒
+-- 说明：记录已提醒的发生日期，提醒按条件更新该字段成功后才发送，重启或多实例时不会重复提醒。
+
+ALTER TABLE `anniversary` ADD COLUMN `last_reminded_for` DATE DEFAULT NULL COMMENT '已提醒的发生日期' AFTER `next_occurrence_date`;
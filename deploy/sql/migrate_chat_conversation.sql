@@ -0,0 +1,12 @@
+-- 生产环境迁移脚本：聊天记录按会话键游标分页
+-- 说明：新增 conversation_id（双方用户ID小的在前），历史记录按 (conversation_id, id) 索引倒序翻页。
+
+ALTER TABLE `chat_message` ADD COLUMN `conversation_id` VARCHAR(41) DEFAULT NULL COMMENT '会话键：双方用户ID小的在前，如 3_8' AFTER `space_id`;
+
+UPDATE `chat_message`
+SET `conversation_id` = CONCAT(LEAST(`from_user_id`, `to_user_id`), '_', GREATEST(`from_user_id`, `to_user_id`))
+WHERE `conversation_id` IS NULL;
+
+ALTER TABLE `chat_message` MODIFY COLUMN `conversation_id` VARCHAR(41) NOT NULL COMMENT '会话键：双方用户ID小的在前，如 3_8';
+
+ALTER TABLE `chat_message` ADD INDEX `idx_conversation_id` (`conversation_id`, `id`);
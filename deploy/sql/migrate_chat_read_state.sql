@@ -0,0 +1,18 @@
+-- 生产环境迁移脚本：聊天已读水位
+-- 说明：已读状态改为每人每会话一条水位记录；需先执行 migrate_chat_conversation.sql。
+-- 按历史 status='read' 的最大消息ID初始化水位，chat_message.status 字段不再更新。
+
+CREATE TABLE IF NOT EXISTS `chat_read_state` (
+  `id` BIGINT PRIMARY KEY AUTO_INCREMENT COMMENT 'ID',
+  `user_id` BIGINT NOT NULL COMMENT '读者用户ID',
+  `conversation_id` VARCHAR(41) NOT NULL COMMENT '会话键',
+  `last_read_message_id` BIGINT NOT NULL DEFAULT 0 COMMENT '已读水位（消息ID）',
+  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  UNIQUE KEY `uk_user_conversation` (`user_id`, `conversation_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='聊天已读水位表';
+
+INSERT IGNORE INTO `chat_read_state` (`user_id`, `conversation_id`, `last_read_message_id`)
+SELECT `to_user_id`, `conversation_id`, MAX(`id`)
+FROM `chat_message`
+WHERE `status` = 'read'
+GROUP BY `to_user_id`, `conversation_id`;
@@ -0,0 +1,8 @@
+-- 生产环境迁移脚本：聊天记录按发送时间排序
+-- 说明：各节点按段预取消息ID，多实例时号段交错，ID 不再代表发送顺序。
+-- 历史分页和重连补发改为按 (created_at, id) 排序，created_at 精确到毫秒，
+-- 并新增 (conversation_id, created_at, id) 索引。
+
+ALTER TABLE `chat_message` MODIFY COLUMN `created_at` DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3) COMMENT '发送时间';
+
+ALTER TABLE `chat_message` ADD INDEX `idx_conversation_time` (`conversation_id`, `created_at`, `id`);
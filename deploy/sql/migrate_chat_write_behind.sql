@@ -0,0 +1,10 @@
+-- 生产环境迁移脚本：聊天消息写后持久化
+-- 说明：聊天消息ID改为按段预分配（发送时即确定顺序号），序列从现有最大消息ID之后开始。
+
+CREATE TABLE IF NOT EXISTS `id_sequence` (
+  `name` VARCHAR(50) PRIMARY KEY COMMENT '序列名',
+  `next_id` BIGINT NOT NULL COMMENT '下一个未分配的ID'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='ID序列表';
+
+INSERT IGNORE INTO `id_sequence` (`name`, `next_id`)
+SELECT 'chat_message', COALESCE(MAX(`id`), 0) + 1 FROM `chat_message`;
@@ -0,0 +1,6 @@
+-- 生产环境迁移脚本：日记日历覆盖索引
+-- 说明：日历视图改为只查 id、作者、心情和日期的摘要接口 /api/diaries/calendar。
+-- 索引以 (space_id, diary_date, user_id) 为前缀，附带 visibility、mood、deleted，
+-- 按月范围查询可直接在索引上完成，不再回表读取正文。
+
+ALTER TABLE `diary` ADD INDEX `idx_space_date_user` (`space_id`, `diary_date`, `user_id`, `visibility`, `mood`, `deleted`);
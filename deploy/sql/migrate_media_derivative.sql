@@ -0,0 +1,17 @@
+-- 生产环境迁移脚本：图片衍生图异步生成（缩略图/展示图）
+-- 说明：上传时只保存原图，缩略图与展示图由后台任务生成后回填到 moment_media。
+
+ALTER TABLE `moment_media` ADD COLUMN `display_url` VARCHAR(255) DEFAULT NULL COMMENT '展示图URL（最长边1600）' AFTER `thumbnail`;
+
+CREATE TABLE IF NOT EXISTS `media_derivative_task` (
+  `id` BIGINT PRIMARY KEY AUTO_INCREMENT COMMENT '任务ID',
+  `media_id` BIGINT NOT NULL COMMENT '动态媒体ID',
+  `source_url` VARCHAR(255) NOT NULL COMMENT '原图URL',
+  `status` VARCHAR(20) NOT NULL DEFAULT 'PENDING' COMMENT '状态: PENDING/RUNNING/DONE/FAILED',
+  `attempts` INT NOT NULL DEFAULT 0 COMMENT '已尝试次数',
+  `last_error` VARCHAR(255) DEFAULT NULL COMMENT '最近一次错误',
+  `created_at` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  INDEX `idx_status_id` (`status`, `id`),
+  INDEX `idx_media_id` (`media_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='图片衍生图任务表';
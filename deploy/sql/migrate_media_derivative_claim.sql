@@ -0,0 +1,6 @@
+-- 生产环境迁移脚本：图片衍生图任务记录认领节点
+-- 说明：多实例部署时，实例启动只把自己认领的、或认领超时的 RUNNING 任务重新排队，
+-- 不再抢走其他实例正在执行的任务。已有的 RUNNING 记录没有认领信息，按超时处理。
+
+ALTER TABLE `media_derivative_task` ADD COLUMN `claimed_by` VARCHAR(64) DEFAULT NULL COMMENT '认领节点' AFTER `last_error`;
+ALTER TABLE `media_derivative_task` ADD COLUMN `claimed_at` DATETIME DEFAULT NULL COMMENT '认领时间' AFTER `claimed_by`;
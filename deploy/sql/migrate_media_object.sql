@@ -0,0 +1,19 @@
+-- 生产环境迁移脚本：按内容去重的媒体对象
+-- 说明：新上传的文件按 SHA-256 去重并记录引用次数，引用归零后才删除文件。
+-- 已有文件不回填，仍按原方式随业务数据删除。
+
+CREATE TABLE IF NOT EXISTS `media_object` (
+  `id` BIGINT PRIMARY KEY AUTO_INCREMENT COMMENT '对象ID',
+  `content_hash` CHAR(64) NOT NULL COMMENT '内容SHA-256',
+  `object_key` VARCHAR(255) NOT NULL COMMENT '存储对象key',
+  `url` VARCHAR(255) NOT NULL COMMENT '访问URL',
+  `size` BIGINT NOT NULL DEFAULT 0 COMMENT '文件大小（字节）',
+  `content_type` VARCHAR(100) DEFAULT NULL COMMENT '文件类型',
+  `ref_count` INT NOT NULL DEFAULT 0 COMMENT '引用次数',
+  `last_used_at` DATETIME NOT NULL COMMENT '最近上传命中时间',
+  `created_at` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  UNIQUE KEY `uk_content_hash` (`content_hash`),
+  UNIQUE KEY `uk_object_key` (`object_key`),
+  INDEX `idx_ref_count_last_used` (`ref_count`, `last_used_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='媒体对象表（按内容去重）';
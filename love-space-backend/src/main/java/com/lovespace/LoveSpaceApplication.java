@@ -3,9 +3,11 @@ package com.lovespace;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @MapperScan("com.lovespace.mapper")
+@EnableScheduling
 public class LoveSpaceApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,20 @@
+package com.lovespace.cluster;
+
+import java.util.function.Consumer;
+
+/**
+ * 节点间事件广播：用于让其他节点上的进程内缓存、快照随本节点的变更一起失效。
+ * 只发给其他节点，本节点的处理由调用方自行完成。
+ */
+public interface ClusterEventBus {
+
+    /**
+     * 广播给其他所有节点
+     */
+    void broadcast(String topic, String payload);
+
+    /**
+     * 接收其他节点广播的该主题事件
+     */
+    void subscribe(String topic, Consumer<String> handler);
+}
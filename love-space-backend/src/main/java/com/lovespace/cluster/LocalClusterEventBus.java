@@ -0,0 +1,22 @@
+package com.lovespace.cluster;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/**
+ * 单实例部署：没有其他节点，广播为空操作
+ */
+@Component
+@ConditionalOnProperty(name = "chat.bus.type", havingValue = "local", matchIfMissing = true)
+public class LocalClusterEventBus implements ClusterEventBus {
+
+    @Override
+    public void broadcast(String topic, String payload) {
+    }
+
+    @Override
+    public void subscribe(String topic, Consumer<String> handler) {
+    }
+}
@@ -0,0 +1,70 @@
+package com.lovespace.cluster;
+
+import com.lovespace.config.NodeIdentity;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * 基于 Redis Pub/Sub 的节点间广播（多实例部署）：每个主题一个频道 cluster:{topic}，
+ * 消息体为 "节点标识\n内容"，节点忽略自己发出的消息。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.bus.type", havingValue = "redis")
+public class RedisClusterEventBus implements ClusterEventBus {
+
+    private static final String CHANNEL_PREFIX = "cluster:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final NodeIdentity nodeIdentity;
+    private final RedisMessageListenerContainer container;
+
+    public RedisClusterEventBus(RedisConnectionFactory connectionFactory, StringRedisTemplate redisTemplate,
+                                NodeIdentity nodeIdentity) {
+        this.redisTemplate = redisTemplate;
+        this.nodeIdentity = nodeIdentity;
+        this.container = new RedisMessageListenerContainer();
+        this.container.setConnectionFactory(connectionFactory);
+        this.container.afterPropertiesSet();
+        this.container.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws Exception {
+        container.destroy();
+    }
+
+    @Override
+    public void broadcast(String topic, String payload) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL_PREFIX + topic, nodeIdentity.getId() + "\n" + payload);
+        } catch (Exception e) {
+            log.warn("节点间广播失败, topic={}", topic, e);
+        }
+    }
+
+    @Override
+    public void subscribe(String topic, Consumer<String> handler) {
+        container.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int separator = body.indexOf('\n');
+            if (separator < 0 || body.substring(0, separator).equals(nodeIdentity.getId())) {
+                return;
+            }
+            try {
+                handler.accept(body.substring(separator + 1));
+            } catch (Exception e) {
+                log.warn("处理节点间事件失败, topic={}", topic, e);
+            }
+        }, new ChannelTopic(CHANNEL_PREFIX + topic));
+    }
+}
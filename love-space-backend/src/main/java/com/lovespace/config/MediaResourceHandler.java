@@ -0,0 +1,250 @@
+package com.lovespace.config;
+
+import com.lovespace.service.LocalThumbnailService;
+import com.lovespace.storage.LocalObjectStorage;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.HttpRequestHandler;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * /uploads/** 媒体文件服务：支持 Range 断点/拖动、强 ETag 协商缓存与 immutable 长缓存，
+ * 容器支持时交给 Tomcat sendfile 零拷贝发送，否则用 FileChannel.transferTo 输出。
+ * 文件 key 随机生成且写入后不再修改，因此可以按大小和修改时间生成强 ETag。
+ */
+@Slf4j
+@Component
+public class MediaResourceHandler implements HttpRequestHandler {
+
+    /** 与 OSS 兼容的图片处理参数 */
+    public static final String PROCESS_PARAM = "x-oss-process";
+
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    /** 缩略图生成失败、以原图代替时不长缓存，之后的请求可以重新生成 */
+    private static final String FALLBACK_CACHE_CONTROL = "no-cache";
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final LocalObjectStorage localStorage;
+    private final LocalThumbnailService thumbnailService;
+    private final String urlPrefix;
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    public MediaResourceHandler(LocalObjectStorage localStorage,
+                                LocalThumbnailService thumbnailService,
+                                @Value("${upload.url-prefix}") String urlPrefix) {
+        this.localStorage = localStorage;
+        this.thumbnailService = thumbnailService;
+        this.urlPrefix = urlPrefix;
+    }
+
+    @Override
+    public void handleRequest(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        boolean head = "HEAD".equals(request.getMethod());
+        if (!head && !"GET".equals(request.getMethod())) {
+            response.setHeader(HttpHeaders.ALLOW, "GET, HEAD");
+            response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+
+        ResolvedFile resolved = resolveFile(request);
+        if (resolved == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Path file = resolved.path();
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, resolved.fallback() ? FALLBACK_CACHE_CONTROL : CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String mimeType = request.getServletContext().getMimeType(file.getFileName().toString());
+        response.setContentType(mimeType != null ? mimeType : "application/octet-stream");
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && isRangeApplicable(request, etag, lastModified)) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if (head || count <= 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        } catch (IOException e) {
+            // 客户端拖动进度条或断开连接时常见，无需报错
+            log.debug("媒体文件发送中断, path={}", file, e);
+        }
+    }
+
+    /**
+     * @param fallback 请求的是缩略图，但生成失败、暂时以原图代替
+     */
+    private record ResolvedFile(Path path, boolean fallback) {
+    }
+
+    /**
+     * 请求路径对应的文件；带 x-oss-process 时返回本地缩略图，不需要缩放时返回原图，生成失败时退回原图（不长缓存）
+     */
+    private ResolvedFile resolveFile(HttpServletRequest request) {
+        String path = urlPathHelper.getPathWithinApplication(request);
+        if (!path.startsWith(urlPrefix + "/")) {
+            return null;
+        }
+        String key = path.substring(urlPrefix.length() + 1);
+        Path file = null;
+        boolean fallback = false;
+        String process = request.getParameter(PROCESS_PARAM);
+        if (process != null) {
+            try {
+                file = thumbnailService.resolve(key, process);
+            } catch (IOException e) {
+                log.warn("生成缩略图失败，返回原图, key={}, process={}", key, process, e);
+                fallback = true;
+            }
+        }
+        if (file == null) {
+            file = localStorage.resolvePath(key);
+        }
+        // 以 . 开头的是写入中的临时文件
+        if (file == null || file.getFileName().toString().startsWith(".") || !Files.isRegularFile(file)) {
+            return null;
+        }
+        return new ResolvedFile(file, fallback);
+    }
+
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return matchesEtag(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * If-Range 与当前版本不一致时忽略 Range，返回完整内容
+     */
+    private boolean isRangeApplicable(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && lastModified / 1000 <= date / 1000;
+    }
+
+    private long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private boolean matchesEtag(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if ("*".equals(value) || etag.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析单个字节范围；多段或格式无法识别时返回空数组（按完整内容响应），范围无法满足时返回 null
+     */
+    private long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            }
+            if (start >= length || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
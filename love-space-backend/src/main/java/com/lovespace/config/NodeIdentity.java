@@ -0,0 +1,38 @@
+package com.lovespace.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.net.InetAddress;
+import java.util.UUID;
+
+/**
+ * 当前实例的节点标识：多实例部署时用于区分任务认领者等。
+ * 未配置 app.node-id 时取 主机名:端口，重启后保持不变。
+ */
+@Slf4j
+@Component
+public class NodeIdentity {
+
+    private final String id;
+
+    public NodeIdentity(@Value("${app.node-id:}") String configured,
+                        @Value("${server.port:8080}") int port) {
+        this.id = StringUtils.hasText(configured) ? configured.trim() : defaultId(port);
+        log.info("节点标识: {}", id);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    private static String defaultId(int port) {
+        try {
+            return InetAddress.getLocalHost().getHostName() + ":" + port;
+        } catch (Exception e) {
+            return UUID.randomUUID().toString().substring(0, 8) + ":" + port;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.lovespace.config;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
 @Data
 @Component
@@ -15,5 +16,29 @@ public class OssProperties {
     private String bucket;
     private String domain;
     private String basePath;
+
+    /** 连接池最大连接数 */
+    private int maxConnections = 64;
+    private int connectionTimeoutMs = 10000;
+    private int socketTimeoutMs = 60000;
+    /** 空闲连接回收时间 */
+    private long idleConnectionTimeMs = 60000;
+
+    /** 超过该大小的文件使用分片上传 */
+    private long multipartThreshold = 16L * 1024 * 1024;
+    private long partSize = 8L * 1024 * 1024;
+    /** 分片并行上传数 */
+    private int uploadParallelism = 4;
+
+    /**
+     * 是否启用且配置完整
+     */
+    public boolean isUsable() {
+        return enabled
+                && StringUtils.hasText(endpoint)
+                && StringUtils.hasText(accessKeyId)
+                && StringUtils.hasText(accessKeySecret)
+                && StringUtils.hasText(bucket);
+    }
 }
 
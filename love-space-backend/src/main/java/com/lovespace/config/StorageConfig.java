@@ -0,0 +1,24 @@
+package com.lovespace.config;
+
+import com.lovespace.storage.LocalObjectStorage;
+import com.lovespace.storage.ObjectStorage;
+import com.lovespace.storage.OssObjectStorage;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Configuration
+public class StorageConfig {
+
+    /**
+     * 媒体存储：OSS 配置完整时使用 OSS（共享客户端，容器关闭时 shutdown），否则使用本地文件系统
+     */
+    @Bean
+    @Primary
+    public ObjectStorage mediaStorage(OssProperties ossProperties, LocalObjectStorage localObjectStorage) {
+        if (ossProperties.isUsable()) {
+            return new OssObjectStorage(ossProperties);
+        }
+        return localObjectStorage;
+    }
+}
@@ -1,23 +1,24 @@
 package com.lovespace.config;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.util.StringUtils;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
 
 import java.util.Arrays;
-import java.io.File;
-import java.nio.file.Paths;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
     
-    @Value("${upload.path}")
-    private String uploadPath;
+    @Value("${upload.url-prefix}")
+    private String uploadUrlPrefix;
     
     @Value("${cors.allowed-origin-patterns:}")
     private String corsAllowedOriginPatterns;
@@ -60,19 +61,14 @@ public class WebConfig implements WebMvcConfigurer {
     }
     
     /**
-     * 静态资源映射（上传的文件）
+     * 上传文件访问（Range、ETag、长缓存、sendfile），优先于默认静态资源映射
      */
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // 使用绝对路径，确保在各种环境下都能正确映射
-        String absoluteUploadPath = Paths.get(uploadPath).toAbsolutePath().toString();
-        // 确保路径以文件分隔符结尾
-        if (!absoluteUploadPath.endsWith(File.separator)) {
-            absoluteUploadPath += File.separator;
-        }
-        
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:" + absoluteUploadPath);
+    @Bean
+    public SimpleUrlHandlerMapping mediaHandlerMapping(MediaResourceHandler mediaResourceHandler) {
+        SimpleUrlHandlerMapping mapping = new SimpleUrlHandlerMapping(
+                Map.of(uploadUrlPrefix + "/**", mediaResourceHandler));
+        mapping.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return mapping;
     }
 
     private List<String> splitAndTrim(String value) {
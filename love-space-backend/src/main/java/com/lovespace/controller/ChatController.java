@@ -1,9 +1,11 @@
 package com.lovespace.controller;
 
 import com.lovespace.common.Result;
+import com.lovespace.dto.ChatHistoryPage;
 import com.lovespace.entity.ChatMessage;
 import com.lovespace.service.ChatMessageService;
 import com.lovespace.websocket.ChatWebSocketHandler;
+import com.lovespace.websocket.WebSocketSessionMonitor;
 import com.lovespace.util.UserContext;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -13,6 +15,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/chat")
@@ -22,6 +25,7 @@ public class ChatController {
 
     private final ChatMessageService chatMessageService;
     private final ChatWebSocketHandler chatWebSocketHandler;
+    private final WebSocketSessionMonitor sessionMonitor;
 
     @GetMapping("/history")
     public Result<List<ChatMessage>> history(
@@ -37,20 +41,57 @@ public class ChatController {
         return Result.success(history);
     }
 
+    /**
+     * 游标分页的聊天记录，cursor 为上一页返回的 nextCursor，首屏不传
+     */
+    @GetMapping("/messages")
+    public Result<ChatHistoryPage> messages(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") Integer size) {
+        Long userId = UserContext.getCurrentUserId();
+        Long partnerId = chatMessageService.getPartnerId(userId);
+        if (partnerId == null) {
+            ChatHistoryPage empty = new ChatHistoryPage();
+            empty.setMessages(List.of());
+            return Result.success(empty);
+        }
+        int limit = size == null || size <= 0 ? 20 : Math.min(size, 100);
+        return Result.success(chatMessageService.getHistoryPage(userId, partnerId, cursor, limit));
+    }
+
+    /**
+     * 标记已读：推进已读水位（upToId 为空时读到最新），返回当前水位
+     */
     @org.springframework.web.bind.annotation.PostMapping("/read")
-    public Result<List<Long>> markRead() {
+    public Result<Long> markRead(@RequestParam(required = false) Long upToId) {
         Long userId = UserContext.getCurrentUserId();
         Long partnerId = chatMessageService.getPartnerId(userId);
         if (partnerId == null) {
-            return Result.success(List.of());
+            return Result.success(0L);
         }
-        List<Long> ids = chatMessageService.markAllRead(userId, partnerId);
-        if (!ids.isEmpty()) {
-            try {
-                chatWebSocketHandler.notifyRead(userId, partnerId, ids);
-            } catch (java.io.IOException ignored) {
-            }
+        Long watermark = chatMessageService.markRead(userId, partnerId, upToId);
+        if (watermark != null) {
+            chatWebSocketHandler.notifyRead(userId, partnerId, watermark);
+            return Result.success(watermark);
         }
-        return Result.success(ids);
+        return Result.success(chatMessageService.getReadWatermark(userId, partnerId));
+    }
+
+    @GetMapping("/unread")
+    public Result<Long> unread() {
+        Long userId = UserContext.getCurrentUserId();
+        Long partnerId = chatMessageService.getPartnerId(userId);
+        if (partnerId == null) {
+            return Result.success(0L);
+        }
+        return Result.success(chatMessageService.countUnread(userId, partnerId));
+    }
+
+    /**
+     * 本节点 WebSocket 连接统计
+     */
+    @GetMapping("/connections")
+    public Result<Map<String, Object>> connections() {
+        return Result.success(sessionMonitor.stats());
     }
 }
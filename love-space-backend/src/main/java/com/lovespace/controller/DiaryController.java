@@ -2,11 +2,14 @@ package com.lovespace.controller;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.lovespace.common.Result;
+import com.lovespace.dto.DiaryCalendarDay;
 import com.lovespace.entity.Diary;
 import com.lovespace.service.DiaryService;
 import com.lovespace.util.UserContext;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
@@ -52,6 +55,21 @@ public class DiaryController {
         return diaryService.getByMonth(userId, year, month);
     }
     
+    /**
+     * 某月日历摘要（日期、心情、作者），带 ETag，内容未变时返回 304
+     */
+    @GetMapping("/calendar")
+    public ResponseEntity<Result<List<DiaryCalendarDay>>> getCalendar(
+            @RequestParam Integer year,
+            @RequestParam Integer month) {
+        Long userId = UserContext.getCurrentUserId();
+        Result<List<DiaryCalendarDay>> result = diaryService.getCalendar(userId, year, month);
+        return ResponseEntity.ok()
+                .eTag(diaryService.calendarEtag(result.getData()))
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(result);
+    }
+    
     /**
      * 获取某天的日记
      */
@@ -2,10 +2,14 @@ package com.lovespace.controller;
 
 import com.lovespace.common.Result;
 import com.lovespace.service.FileService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
@@ -23,6 +27,17 @@ public class FileController {
         return fileService.uploadFile(file);
     }
     
+    /**
+     * 流式上传单个文件：请求体为文件内容，Content-Type 为文件类型，文件名（URL 编码）放在 X-File-Name
+     */
+    @PostMapping("/stream")
+    public Result<String> uploadStream(HttpServletRequest request,
+                                       @RequestHeader(value = "X-File-Name", required = false) String fileName)
+            throws IOException {
+        return fileService.uploadStream(request.getInputStream(), request.getContentType(),
+                request.getContentLengthLong(), decodeFileName(fileName));
+    }
+
     /**
      * 上传多个文件
      */
@@ -32,10 +47,21 @@ public class FileController {
     }
     
     /**
-     * 删除文件
+     * 删除文件（撤销未使用的上传）
      */
     @DeleteMapping
     public Result<Void> delete(@RequestParam("url") String url) {
-        return fileService.deleteFile(url);
+        return fileService.discardUpload(url);
+    }
+
+    private String decodeFileName(String fileName) {
+        if (fileName == null) {
+            return null;
+        }
+        try {
+            return URLDecoder.decode(fileName, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return fileName;
+        }
     }
 }
@@ -2,13 +2,10 @@ package com.lovespace.controller;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.lovespace.common.Result;
-import com.lovespace.dto.DashboardData;
 import com.lovespace.dto.GuestDashboardResponse;
 import com.lovespace.entity.Comment;
 import com.lovespace.entity.Moment;
 import com.lovespace.entity.MomentMedia;
-import com.lovespace.entity.User;
-import com.lovespace.mapper.UserMapper;
 import com.lovespace.service.DashboardService;
 import com.lovespace.service.FileService;
 import com.lovespace.service.HostSpaceService;
@@ -19,7 +16,6 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -32,7 +28,6 @@ public class GuestController {
     private final DashboardService dashboardService;
     private final MomentService momentService;
     private final FileService fileService;
-    private final UserMapper userMapper;
     private final SpaceService spaceService;
 
     @GetMapping("/dashboard")
@@ -43,28 +38,7 @@ public class GuestController {
             hostUserId = viewerUserId;
         }
 
-        DashboardData dashboard = dashboardService.getHostDashboardData(hostUserId, viewerUserId);
-        User user1 = userMapper.selectById(hostUserId);
-        if (user1 != null) {
-            user1.setPassword(null);
-        }
-
-        User user2 = null;
-        Long partnerId = spaceService.getPartnerUserIdInPrimarySpace(hostUserId);
-        if (partnerId != null) {
-            user2 = userMapper.selectById(partnerId);
-            if (user2 != null) {
-                user2.setPassword(null);
-            }
-        }
-
-        GuestDashboardResponse.Couple couple = new GuestDashboardResponse.Couple();
-        couple.setUser1(user1);
-        couple.setUser2(user2);
-
-        GuestDashboardResponse response = new GuestDashboardResponse();
-        response.setDashboard(dashboard);
-        response.setCouple(couple);
+        GuestDashboardResponse response = dashboardService.getGuestDashboard(hostUserId, viewerUserId);
         return Result.success(response);
     }
 
@@ -95,27 +69,17 @@ public class GuestController {
             }
         }
 
-        List<MomentMedia> mediaList = new ArrayList<>();
-        if (files != null && files.length > 0) {
-            for (MultipartFile file : files) {
-                if (!file.isEmpty()) {
-                    Result<String> uploadResult = fileService.uploadFile(file);
-                    if (uploadResult.getCode() == 200) {
-                        MomentMedia media = new MomentMedia();
-                        String url = uploadResult.getData();
-                        String type = fileService.getFileType(file.getContentType());
-                        media.setUrl(url);
-                        media.setType(type);
-                        if ("image".equals(type)) {
-                            media.setThumbnail(fileService.buildThumbnailUrl(url));
-                        }
-                        mediaList.add(media);
-                    }
-                }
-            }
+        Result<List<MomentMedia>> uploadResult = fileService.uploadMomentMedia(files);
+        if (uploadResult.getCode() != 200) {
+            return Result.error(uploadResult.getMessage());
         }
+        List<MomentMedia> mediaList = uploadResult.getData();
 
-        return momentService.publishGuestMoment(guestUserId, hostSpaceId, content, location, mediaList);
+        Result<Moment> result = momentService.publishGuestMoment(guestUserId, hostSpaceId, content, location, mediaList);
+        if (result.getCode() != 200) {
+            mediaList.forEach(media -> fileService.discardUpload(media.getUrl()));
+        }
+        return result;
     }
 
     @DeleteMapping("/moments/{id}")
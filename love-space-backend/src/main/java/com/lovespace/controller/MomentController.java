@@ -13,7 +13,6 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -39,27 +38,17 @@ public class MomentController {
         Long userId = UserContext.getCurrentUserId();
         
         // 处理上传的文件
-        List<MomentMedia> mediaList = new ArrayList<>();
-        if (files != null && files.length > 0) {
-            for (MultipartFile file : files) {
-                if (!file.isEmpty()) {
-                    Result<String> uploadResult = fileService.uploadFile(file);
-                    if (uploadResult.getCode() == 200) {
-                        MomentMedia media = new MomentMedia();
-                        String url = uploadResult.getData();
-                        String type = fileService.getFileType(file.getContentType());
-                        media.setUrl(url);
-                        media.setType(type);
-                        if ("image".equals(type)) {
-                            media.setThumbnail(fileService.buildThumbnailUrl(url));
-                        }
-                        mediaList.add(media);
-                    }
-                }
-            }
+        Result<List<MomentMedia>> uploadResult = fileService.uploadMomentMedia(files);
+        if (uploadResult.getCode() != 200) {
+            return Result.error(uploadResult.getMessage());
         }
-        
-        return momentService.publish(userId, content, location, visibility, mediaList);
+        List<MomentMedia> mediaList = uploadResult.getData();
+
+        Result<Moment> result = momentService.publish(userId, content, location, visibility, mediaList);
+        if (result.getCode() != 200) {
+            mediaList.forEach(media -> fileService.discardUpload(media.getUrl()));
+        }
+        return result;
     }
     
     /**
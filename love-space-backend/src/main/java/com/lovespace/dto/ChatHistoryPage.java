@@ -0,0 +1,15 @@
+package com.lovespace.dto;
+
+import com.lovespace.entity.ChatMessage;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ChatHistoryPage {
+    /** 按 id 升序 */
+    private List<ChatMessage> messages;
+    /** 继续向前翻页时传入的游标（本页最早一条的 id），没有更早的消息时为 null */
+    private Long nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,24 @@
+package com.lovespace.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 日历视图中某一天的日记摘要，不含正文，正文通过日记详情按需加载
+ */
+@Data
+public class DiaryCalendarDay {
+    private LocalDate date;
+    /** 当天可见的日记，自己的在前 */
+    private List<Entry> entries;
+
+    @Data
+    public static class Entry {
+        private Long id;
+        private Long userId;
+        private String nickname;
+        private String mood;
+    }
+}
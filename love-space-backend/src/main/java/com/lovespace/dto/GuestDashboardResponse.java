@@ -1,6 +1,5 @@
 package com.lovespace.dto;
 
-import com.lovespace.entity.User;
 import lombok.Data;
 
 @Data
@@ -10,8 +9,8 @@ public class GuestDashboardResponse {
 
     @Data
     public static class Couple {
-        private User user1;
-        private User user2;
+        private UserProfile user1;
+        private UserProfile user2;
     }
 }
 
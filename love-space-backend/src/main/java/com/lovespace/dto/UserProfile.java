@@ -0,0 +1,28 @@
+package com.lovespace.dto;
+
+import com.lovespace.entity.User;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户公开资料（不含密码），缓存共享，只读
+ */
+@Value
+public class UserProfile {
+
+    Long id;
+    String username;
+    String nickname;
+    String avatar;
+    LocalDateTime createdAt;
+    LocalDateTime updatedAt;
+
+    public static UserProfile from(User user) {
+        if (user == null) {
+            return null;
+        }
+        return new UserProfile(user.getId(), user.getUsername(), user.getNickname(), user.getAvatar(),
+                user.getCreatedAt(), user.getUpdatedAt());
+    }
+}
@@ -30,6 +30,12 @@ public class Anniversary {
     private Integer remindDays;
     
     private String icon;
+
+    /** 下一次发生日期（不早于今天），不重复且已过去的为空；写入时和每日零点后重新计算 */
+    private LocalDate nextOccurrenceDate;
+
+    /** 已发送提醒的那次发生日期，用于保证每次只提醒一次 */
+    private LocalDate lastRemindedFor;
     
     @TableField(fill = FieldFill.INSERT)
     private LocalDateTime createdAt;
@@ -11,11 +11,15 @@ import java.time.LocalDateTime;
 @TableName("chat_message")
 public class ChatMessage {
 
-    @TableId(type = IdType.AUTO)
+    /** 由 ChatMessageIdAllocator 在发送时分配，保证投递前就有确定的顺序号 */
+    @TableId(type = IdType.INPUT)
     private Long id;
 
     private Long spaceId;
 
+    /** 会话键：双方用户ID小的在前，如 3_8 */
+    private String conversationId;
+
     private Long fromUserId;
 
     private Long toUserId;
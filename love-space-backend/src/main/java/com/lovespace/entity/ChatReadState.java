@@ -0,0 +1,25 @@
+package com.lovespace.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@TableName("chat_read_state")
+public class ChatReadState {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /** 读者用户ID */
+    private Long userId;
+
+    /** 会话键，见 ChatMessage.conversationId */
+    private String conversationId;
+
+    /** 已读水位：该会话中 ID 不大于此值的对方消息均视为已读 */
+    private Long lastReadMessageId;
+
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+}
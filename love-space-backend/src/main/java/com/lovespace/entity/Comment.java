@@ -1,6 +1,7 @@
 package com.lovespace.entity;
 
 import com.baomidou.mybatisplus.annotation.*;
+import com.lovespace.dto.UserProfile;
 import lombok.Data;
 import java.time.LocalDateTime;
 
@@ -29,8 +30,8 @@ public class Comment {
     
     // 非数据库字段
     @TableField(exist = false)
-    private User user;
+    private UserProfile user;
 
     @TableField(exist = false)
-    private User replyToUser;
+    private UserProfile replyToUser;
 }
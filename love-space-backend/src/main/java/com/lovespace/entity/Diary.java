@@ -1,6 +1,8 @@
 package com.lovespace.entity;
 
 import com.baomidou.mybatisplus.annotation.*;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.lovespace.dto.UserProfile;
 import lombok.Data;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -41,5 +43,6 @@ public class Diary {
     
     // 非数据库字段
     @TableField(exist = false)
-    private User user;
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private UserProfile user;
 }
@@ -0,0 +1,18 @@
+package com.lovespace.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+@Data
+@TableName("id_sequence")
+public class IdSequence {
+
+    /** 序列名，如 chat_message */
+    @TableId(type = IdType.INPUT)
+    private String name;
+
+    /** 下一个未分配的ID */
+    private Long nextId;
+}
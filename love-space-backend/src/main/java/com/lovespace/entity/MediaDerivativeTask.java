@@ -0,0 +1,35 @@
+package com.lovespace.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@TableName("media_derivative_task")
+public class MediaDerivativeTask {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private Long mediaId;
+
+    private String sourceUrl;
+
+    /** 状态: PENDING/RUNNING/DONE/FAILED */
+    private String status;
+
+    private Integer attempts;
+
+    private String lastError;
+
+    /** 认领执行的节点，见 NodeIdentity */
+    private String claimedBy;
+
+    private LocalDateTime claimedAt;
+
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,37 @@
+package com.lovespace.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@TableName("media_object")
+public class MediaObject {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /** 内容 SHA-256（十六进制） */
+    private String contentHash;
+
+    /** 存储中的对象 key */
+    private String objectKey;
+
+    private String url;
+
+    private Long size;
+
+    private String contentType;
+
+    /** 引用次数：moment_media、chat_message.media_url、user.avatar */
+    private Integer refCount;
+
+    /** 最近一次上传命中时间，未被引用的对象在宽限期后才会清理 */
+    private LocalDateTime lastUsedAt;
+
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+}
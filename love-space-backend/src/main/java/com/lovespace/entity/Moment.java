@@ -1,6 +1,7 @@
 package com.lovespace.entity;
 
 import com.baomidou.mybatisplus.annotation.*;
+import com.lovespace.dto.UserProfile;
 import lombok.Data;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -35,7 +36,7 @@ public class Moment {
     
     // 非数据库字段
     @TableField(exist = false)
-    private User user;
+    private UserProfile user;
     
     @TableField(exist = false)
     private List<MomentMedia> mediaList;
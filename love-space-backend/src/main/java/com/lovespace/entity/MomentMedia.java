@@ -19,6 +19,9 @@ public class MomentMedia {
     private String url;
     
     private String thumbnail;
+
+    /** 展示图URL（最长边 1600） */
+    private String displayUrl;
     
     private Integer sort;
     
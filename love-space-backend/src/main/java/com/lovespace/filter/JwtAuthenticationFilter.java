@@ -1,5 +1,6 @@
 package com.lovespace.filter;
 
+import com.lovespace.util.JwtPrincipal;
 import com.lovespace.util.JwtUtil;
 import com.lovespace.util.UserContext;
 import jakarta.servlet.FilterChain;
@@ -27,9 +28,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         String token = getTokenFromRequest(request);
 
         try {
-            if (token != null && jwtUtil.validateToken(token) && SecurityContextHolder.getContext().getAuthentication() == null) {
-                Long userId = jwtUtil.getUserIdFromToken(token);
-                String username = jwtUtil.getUsernameFromToken(token);
+            JwtPrincipal principal = token == null ? null : jwtUtil.verify(token);
+            if (principal != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                Long userId = principal.getUserId();
+                String username = principal.getUsername();
 
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userId, null, java.util.List.of());
                 authentication.setDetails(username);
@@ -0,0 +1,9 @@
+package com.lovespace.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.lovespace.entity.MediaObject;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface MediaObjectMapper extends BaseMapper<MediaObject> {
+}
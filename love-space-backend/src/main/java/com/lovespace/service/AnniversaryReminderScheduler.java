@@ -0,0 +1,264 @@
+package com.lovespace.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.lovespace.cluster.ClusterEventBus;
+import com.lovespace.entity.Anniversary;
+import com.lovespace.mapper.AnniversaryMapper;
+import com.lovespace.websocket.ChatWebSocketHandler;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 纪念日提醒：每个开启提醒的纪念日在内存延迟队列中只有一个待触发项（下一次发生日期前 remind_days 天的提醒时刻），
+ * 启动时加载一次，之后随纪念日增删改增量调整，不定时扫表。
+ * 触发时先按条件更新 last_reminded_for，更新成功的节点才经聊天 WebSocket 推送，重启或多实例都不会重复提醒；
+ * 重启时已过提醒时刻但尚未提醒的会立即补发。
+ * 多实例时增删改经 {@link ClusterEventBus} 通知其他节点按库中最新数据重新排队；
+ * 认领条件还要求提醒仍开启且日期、重复方式、提前天数与排队时一致，通知未送达的节点也不会按旧数据提醒。
+ * 认领时数据库出错则按退避间隔重试同一次提醒，认领成功后才排下一次。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AnniversaryReminderScheduler {
+
+    private static final String CLUSTER_TOPIC = "anniversary-reminder";
+
+    /** 提醒时刻，HH:mm */
+    @Value("${anniversary.remind-time:09:00}")
+    private String remindTime;
+
+    /** 认领失败后首次重试的间隔，之后每次翻倍 */
+    @Value("${anniversary.retry-backoff-seconds:30}")
+    private long retryBackoffSeconds;
+
+    /** 重试间隔上限 */
+    @Value("${anniversary.retry-max-backoff-seconds:600}")
+    private long retryMaxBackoffSeconds;
+
+    private final AnniversaryMapper anniversaryMapper;
+    private final SpaceService spaceService;
+    private final ChatWebSocketHandler chatWebSocketHandler;
+    private final ClusterEventBus clusterEventBus;
+
+    private final DelayQueue<Reminder> queue = new DelayQueue<>();
+    private final Map<Long, Reminder> reminders = new ConcurrentHashMap<>();
+    private Thread worker;
+
+    /**
+     * 待触发的提醒，持有触发时所需的纪念日快照；attempts 为认领失败后已重试的次数
+     */
+    private record Reminder(Anniversary anniversary, LocalDate occurrence, long fireAtMillis, int attempts) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(fireAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(fireAtMillis, ((Reminder) other).fireAtMillis);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        clusterEventBus.subscribe(CLUSTER_TOPIC, payload -> refresh(Long.valueOf(payload)));
+        List<Anniversary> list = anniversaryMapper.selectList(new LambdaQueryWrapper<Anniversary>()
+                .eq(Anniversary::getRemind, true)
+                .and(w -> w.isNotNull(Anniversary::getNextOccurrenceDate)
+                        .or()
+                        .eq(Anniversary::getRepeatYearly, true)));
+        list.forEach(this::scheduleFrom);
+        worker = new Thread(this::run, "anniversary-reminder");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("纪念日提醒已加载, count={}", reminders.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * 纪念日新增或修改后重新计算提醒时刻，并通知其他节点
+     */
+    public void reschedule(Anniversary source) {
+        if (source == null || source.getId() == null) {
+            return;
+        }
+        scheduleFrom(source);
+        clusterEventBus.broadcast(CLUSTER_TOPIC, source.getId().toString());
+    }
+
+    /**
+     * 纪念日删除后移除提醒，并通知其他节点
+     */
+    public void cancel(Long anniversaryId) {
+        remove(anniversaryId);
+        clusterEventBus.broadcast(CLUSTER_TOPIC, anniversaryId.toString());
+    }
+
+    /**
+     * 按库中最新数据重新排队，纪念日已删除时移除
+     */
+    private void refresh(Long anniversaryId) {
+        Anniversary latest = anniversaryMapper.selectById(anniversaryId);
+        if (latest == null) {
+            remove(anniversaryId);
+        } else {
+            scheduleFrom(latest);
+        }
+    }
+
+    /**
+     * 重新计算提醒时刻，关闭提醒或已无下一次发生时移除
+     */
+    private synchronized void scheduleFrom(Anniversary source) {
+        remove(source.getId());
+        Anniversary anniversary = new Anniversary();
+        BeanUtils.copyProperties(source, anniversary);
+        if (!Boolean.TRUE.equals(anniversary.getRemind())) {
+            return;
+        }
+        LocalDate occurrence = AnniversaryService.nextOccurrence(anniversary, LocalDate.now());
+        if (occurrence != null && occurrence.equals(anniversary.getLastRemindedFor())) {
+            // 本次已提醒过，排到下一次
+            occurrence = AnniversaryService.nextOccurrence(anniversary, occurrence.plusDays(1));
+        }
+        if (occurrence == null) {
+            return;
+        }
+        schedule(anniversary, occurrence);
+    }
+
+    private synchronized void remove(Long anniversaryId) {
+        Reminder reminder = reminders.remove(anniversaryId);
+        if (reminder != null) {
+            queue.remove(reminder);
+        }
+    }
+
+    private void schedule(Anniversary anniversary, LocalDate occurrence) {
+        int remindDays = anniversary.getRemindDays() == null ? 0 : Math.max(0, anniversary.getRemindDays());
+        LocalDateTime fireAt = occurrence.minusDays(remindDays).atTime(LocalTime.parse(remindTime));
+        long fireAtMillis = fireAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Reminder reminder = new Reminder(anniversary, occurrence, fireAtMillis, 0);
+        reminders.put(anniversary.getId(), reminder);
+        queue.put(reminder);
+    }
+
+    /**
+     * 认领出错时把同一次提醒按退避间隔重新排队；期间纪念日被修改时以修改后重新排入的为准
+     */
+    private synchronized void retryLater(Reminder reminder) {
+        Long id = reminder.anniversary().getId();
+        if (reminders.containsKey(id)) {
+            return;
+        }
+        int shift = Math.min(reminder.attempts(), 20);
+        long backoffSeconds = Math.min(retryBackoffSeconds << shift, retryMaxBackoffSeconds);
+        Reminder retry = new Reminder(reminder.anniversary(), reminder.occurrence(),
+                System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(backoffSeconds), reminder.attempts() + 1);
+        reminders.put(id, retry);
+        queue.put(retry);
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Reminder reminder;
+            try {
+                reminder = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Long id = reminder.anniversary().getId();
+            // 已被修改或取消的旧项直接丢弃
+            if (!reminders.remove(id, reminder)) {
+                continue;
+            }
+            try {
+                if (!claim(reminder)) {
+                    // 已由其他节点发送，或纪念日已在其他节点被修改、关闭提醒、删除：按库中最新数据重新排队
+                    refresh(id);
+                    continue;
+                }
+            } catch (Exception e) {
+                log.warn("认领纪念日提醒失败，稍后重试, anniversaryId={}, attempts={}", id, reminder.attempts(), e);
+                retryLater(reminder);
+                continue;
+            }
+            try {
+                notifyMembers(reminder);
+            } catch (Exception e) {
+                log.warn("发送纪念日提醒失败, anniversaryId={}", id, e);
+            }
+            Anniversary anniversary = reminder.anniversary();
+            anniversary.setLastRemindedFor(reminder.occurrence());
+            LocalDate next = AnniversaryService.nextOccurrence(anniversary, reminder.occurrence().plusDays(1));
+            synchronized (this) {
+                // 触发期间纪念日被修改时以修改后重新排入的为准
+                if (next != null && !reminders.containsKey(id)) {
+                    schedule(anniversary, next);
+                }
+            }
+        }
+    }
+
+    /**
+     * 认领本次提醒，已被其他节点认领或纪念日已变化时返回 false
+     */
+    private boolean claim(Reminder reminder) {
+        Anniversary anniversary = reminder.anniversary();
+        LocalDate occurrence = reminder.occurrence();
+        // 只有把 last_reminded_for 推进到本次的节点发送；已删除、已关闭提醒或提醒时刻已变化的不会更新成功
+        int claimed = anniversaryMapper.update(null, new LambdaUpdateWrapper<Anniversary>()
+                .eq(Anniversary::getId, anniversary.getId())
+                .eq(Anniversary::getRemind, true)
+                .eq(Anniversary::getDate, anniversary.getDate())
+                .eq(anniversary.getRepeatYearly() != null, Anniversary::getRepeatYearly, anniversary.getRepeatYearly())
+                .isNull(anniversary.getRepeatYearly() == null, Anniversary::getRepeatYearly)
+                .eq(anniversary.getRemindDays() != null, Anniversary::getRemindDays, anniversary.getRemindDays())
+                .isNull(anniversary.getRemindDays() == null, Anniversary::getRemindDays)
+                .and(w -> w.isNull(Anniversary::getLastRemindedFor)
+                        .or()
+                        .ne(Anniversary::getLastRemindedFor, occurrence))
+                .set(Anniversary::getLastRemindedFor, occurrence));
+        return claimed > 0;
+    }
+
+    /**
+     * 经聊天 WebSocket 推送给空间内的成员
+     */
+    private void notifyMembers(Reminder reminder) {
+        Anniversary anniversary = reminder.anniversary();
+        LocalDate occurrence = reminder.occurrence();
+        long daysLeft = Math.max(0, ChronoUnit.DAYS.between(LocalDate.now(), occurrence));
+        for (Long userId : spaceService.getMemberUserIds(anniversary.getSpaceId())) {
+            chatWebSocketHandler.notifyReminder(userId, anniversary, occurrence, daysLeft);
+        }
+        log.info("已发送纪念日提醒, anniversaryId={}, occurrence={}", anniversary.getId(), occurrence);
+    }
+}
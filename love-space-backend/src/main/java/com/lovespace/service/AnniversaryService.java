@@ -1,20 +1,25 @@
 package com.lovespace.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.lovespace.common.Result;
 import com.lovespace.entity.Anniversary;
 import com.lovespace.mapper.AnniversaryMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class AnniversaryService extends ServiceImpl<AnniversaryMapper, Anniversary> {
@@ -23,6 +28,8 @@ public class AnniversaryService extends ServiceImpl<AnniversaryMapper, Anniversa
     private String coupleStartDate;
 
     private final SpaceService spaceService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AnniversaryReminderScheduler reminderScheduler;
     
     /**
      * 添加纪念日
@@ -30,7 +37,11 @@ public class AnniversaryService extends ServiceImpl<AnniversaryMapper, Anniversa
     public Result<Anniversary> add(Long userId, Anniversary anniversary) {
         Long spaceId = spaceService.getOrCreatePrimarySpaceId(userId);
         anniversary.setSpaceId(spaceId);
+        anniversary.setNextOccurrenceDate(nextOccurrence(anniversary, LocalDate.now()));
+        anniversary.setLastRemindedFor(null);
         this.save(anniversary);
+        eventPublisher.publishEvent(DashboardChangedEvent.anniversaries(spaceId));
+        reminderScheduler.reschedule(anniversary);
         calculateDays(anniversary);
         return Result.success("添加成功", anniversary);
     }
@@ -52,41 +63,62 @@ public class AnniversaryService extends ServiceImpl<AnniversaryMapper, Anniversa
     }
     
     /**
-     * 获取即将到来的纪念日（未来30天内）
+     * 获取即将到来的纪念日（未来 days 天内，最多 5 个），按下一次发生日期走索引范围查询
      */
     public List<Anniversary> getUpcoming(Long userId, int days) {
         Long spaceId = spaceService.getOrCreatePrimarySpaceId(userId);
         LocalDate today = LocalDate.now();
-        List<Anniversary> allList = this.list(new LambdaQueryWrapper<Anniversary>()
-                .eq(Anniversary::getSpaceId, spaceId));
-        
-        return allList.stream()
-                .peek(this::calculateDays)
-                .filter(a -> {
-                    // 对于每年重复的纪念日，计算今年的日期
-                    LocalDate targetDate = a.getDate();
-                    if (Boolean.TRUE.equals(a.getRepeatYearly())) {
-                        targetDate = targetDate.withYear(today.getYear());
-                        // 如果今年的日期已过，看明年的
-                        if (targetDate.isBefore(today)) {
-                            targetDate = targetDate.plusYears(1);
-                        }
-                    }
-                    long daysUntil = ChronoUnit.DAYS.between(today, targetDate);
-                    return daysUntil >= 0 && daysUntil <= days;
-                })
-                .sorted(Comparator.comparing(a -> {
-                    LocalDate targetDate = a.getDate();
-                    if (Boolean.TRUE.equals(a.getRepeatYearly())) {
-                        targetDate = targetDate.withYear(today.getYear());
-                        if (targetDate.isBefore(today)) {
-                            targetDate = targetDate.plusYears(1);
-                        }
-                    }
-                    return targetDate;
-                }))
-                .limit(5)
-                .collect(Collectors.toList());
+        List<Anniversary> list = this.list(new LambdaQueryWrapper<Anniversary>()
+                .eq(Anniversary::getSpaceId, spaceId)
+                .between(Anniversary::getNextOccurrenceDate, today, today.plusDays(days))
+                .orderByAsc(Anniversary::getNextOccurrenceDate)
+                .last("LIMIT 5"));
+        list.forEach(this::calculateDays);
+        return list;
+    }
+
+    /**
+     * 每日零点后把已过去的下一次发生日期推到下一年（不重复的置空），启动时补算一次
+     */
+    @Scheduled(cron = "${anniversary.rollover-cron:0 1 0 * * *}")
+    @EventListener(ApplicationReadyEvent.class)
+    public void rollover() {
+        LocalDate today = LocalDate.now();
+        List<Anniversary> stale = this.list(new LambdaQueryWrapper<Anniversary>()
+                .select(Anniversary::getId, Anniversary::getSpaceId, Anniversary::getDate,
+                        Anniversary::getRepeatYearly, Anniversary::getNextOccurrenceDate)
+                .lt(Anniversary::getNextOccurrenceDate, today)
+                .or(w -> w.isNull(Anniversary::getNextOccurrenceDate)
+                        .and(x -> x.eq(Anniversary::getRepeatYearly, true)
+                                .or()
+                                .ge(Anniversary::getDate, today))));
+        if (stale.isEmpty()) {
+            return;
+        }
+        for (Anniversary anniversary : stale) {
+            this.update(null, new LambdaUpdateWrapper<Anniversary>()
+                    .eq(Anniversary::getId, anniversary.getId())
+                    .set(Anniversary::getNextOccurrenceDate, nextOccurrence(anniversary, today)));
+        }
+        log.info("纪念日下一次发生日期已更新, count={}", stale.size());
+        eventPublisher.publishEvent(DashboardChangedEvent.anniversaries(null));
+    }
+
+    /**
+     * 不早于 from 的下一次发生日期。每年重复的按原始日期换算到各年份，
+     * 2 月 29 日在平年取 2 月 28 日、闰年仍为 2 月 29 日；不重复且已过去的返回 null
+     */
+    static LocalDate nextOccurrence(Anniversary anniversary, LocalDate from) {
+        LocalDate date = anniversary.getDate();
+        if (date == null) {
+            return null;
+        }
+        if (!Boolean.TRUE.equals(anniversary.getRepeatYearly())) {
+            return date.isBefore(from) ? null : date;
+        }
+        LocalDate candidate = date.withYear(from.getYear());
+        // 从原始日期换算下一年，避免 plusYears 把平年的 2 月 28 日带到闰年
+        return candidate.isBefore(from) ? date.withYear(from.getYear() + 1) : candidate;
     }
     
     /**
@@ -102,8 +134,21 @@ public class AnniversaryService extends ServiceImpl<AnniversaryMapper, Anniversa
             return Result.error("无权操作");
         }
         anniversary.setSpaceId(spaceId);
+        Anniversary merged = new Anniversary();
+        merged.setDate(anniversary.getDate() != null ? anniversary.getDate() : exist.getDate());
+        merged.setRepeatYearly(anniversary.getRepeatYearly() != null ? anniversary.getRepeatYearly() : exist.getRepeatYearly());
+        LocalDate next = nextOccurrence(merged, LocalDate.now());
+        // 提醒记录只由提醒任务维护
+        anniversary.setLastRemindedFor(null);
+        anniversary.setNextOccurrenceDate(null);
         
-        this.updateById(anniversary);
+        // 下一次发生日期可能变为空（改成已过去的一次性日期），需显式写入，updateById 会跳过 null 字段
+        this.update(anniversary, new LambdaUpdateWrapper<Anniversary>()
+                .eq(Anniversary::getId, anniversary.getId())
+                .set(Anniversary::getNextOccurrenceDate, next));
+        anniversary.setNextOccurrenceDate(next);
+        eventPublisher.publishEvent(DashboardChangedEvent.anniversaries(spaceId));
+        reminderScheduler.reschedule(this.getById(anniversary.getId()));
         calculateDays(anniversary);
         return Result.success("更新成功", anniversary);
     }
@@ -127,6 +172,8 @@ public class AnniversaryService extends ServiceImpl<AnniversaryMapper, Anniversa
         }
         
         this.removeById(id);
+        eventPublisher.publishEvent(DashboardChangedEvent.anniversaries(spaceId));
+        reminderScheduler.cancel(id);
         return Result.success("删除成功", null);
     }
     
@@ -161,27 +208,11 @@ public class AnniversaryService extends ServiceImpl<AnniversaryMapper, Anniversa
         if ("past".equals(anniversary.getType())) {
             // 纪念日：计算已经过了多少天
             if (Boolean.TRUE.equals(anniversary.getRepeatYearly())) {
-                // 每年重复，计算今年的日期
-                LocalDate thisYear = targetDate.withYear(today.getYear());
-                if (thisYear.isAfter(today)) {
-                    // 今年还没到，显示距离今年还有多少天
-                    long daysUntil = ChronoUnit.DAYS.between(today, thisYear);
-                    anniversary.setDays(daysUntil);
-                    anniversary.setDaysText("还有" + daysUntil + "天");
-                } else {
-                    // 今年已过，计算从今年的日期到今天
-                    long daysSince = ChronoUnit.DAYS.between(thisYear, today);
-                    if (daysSince == 0) {
-                        anniversary.setDays(0L);
-                        anniversary.setDaysText("就是今天！");
-                    } else {
-                        // 计算距离明年还有多少天
-                        LocalDate nextYear = thisYear.plusYears(1);
-                        long daysUntil = ChronoUnit.DAYS.between(today, nextYear);
-                        anniversary.setDays(daysUntil);
-                        anniversary.setDaysText("还有" + daysUntil + "天");
-                    }
-                }
+                // 每年重复，计算距离下一次还有多少天
+                LocalDate next = nextOccurrence(anniversary, today);
+                long daysUntil = ChronoUnit.DAYS.between(today, next);
+                anniversary.setDays(daysUntil);
+                anniversary.setDaysText(daysUntil == 0 ? "就是今天！" : "还有" + daysUntil + "天");
             } else {
                 // 不重复，计算从那天到今天
                 long days = ChronoUnit.DAYS.between(targetDate, today);
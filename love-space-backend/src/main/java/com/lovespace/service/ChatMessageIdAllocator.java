@@ -0,0 +1,91 @@
+package com.lovespace.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.lovespace.entity.ChatMessage;
+import com.lovespace.entity.IdSequence;
+import com.lovespace.mapper.ChatMessageMapper;
+import com.lovespace.mapper.IdSequenceMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * 聊天消息ID分配：从 id_sequence 表按段预取，段内在内存中递增，消息在写库前就拥有唯一ID。
+ * 多实例时各节点的号段会交错，ID 只保证唯一、不保证跨节点按发送顺序递增，
+ * 因此历史分页和重连补发按 (created_at, id) 排序。
+ * 没有使用雪花ID，是为了让ID保持在前端 Number 可精确表示的范围内。
+ */
+@Service
+@RequiredArgsConstructor
+public class ChatMessageIdAllocator {
+
+    private static final String SEQUENCE_NAME = "chat_message";
+
+    @Value("${chat.id-block-size:200}")
+    private int configuredBlockSize;
+
+    private final IdSequenceMapper idSequenceMapper;
+    private final ChatMessageMapper chatMessageMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    private long next;
+    private long limit;
+    private int blockSize;
+
+    @PostConstruct
+    public void init() {
+        blockSize = Math.max(1, configuredBlockSize);
+    }
+
+    public synchronized long nextId() {
+        if (next >= limit) {
+            allocateBlock();
+        }
+        return next++;
+    }
+
+    private void allocateBlock() {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                Long start = transactionTemplate.execute(status -> {
+                    IdSequence sequence = idSequenceMapper.selectOne(new LambdaQueryWrapper<IdSequence>()
+                            .eq(IdSequence::getName, SEQUENCE_NAME)
+                            .last("FOR UPDATE"));
+                    if (sequence == null) {
+                        // 序列未初始化时从现有最大消息ID之后开始
+                        long blockStart = maxMessageId() + 1;
+                        sequence = new IdSequence();
+                        sequence.setName(SEQUENCE_NAME);
+                        sequence.setNextId(blockStart + blockSize);
+                        idSequenceMapper.insert(sequence);
+                        return blockStart;
+                    }
+                    long blockStart = sequence.getNextId();
+                    sequence.setNextId(blockStart + blockSize);
+                    idSequenceMapper.updateById(sequence);
+                    return blockStart;
+                });
+                next = start;
+                limit = start + blockSize;
+                return;
+            } catch (DuplicateKeyException e) {
+                // 其他实例同时初始化了序列，重新读取
+            }
+        }
+        throw new IllegalStateException("分配聊天消息ID失败");
+    }
+
+    private long maxMessageId() {
+        List<Object> max = chatMessageMapper.selectObjs(new QueryWrapper<ChatMessage>().select("MAX(id)"));
+        if (max.isEmpty() || max.get(0) == null) {
+            return 0;
+        }
+        return ((Number) max.get(0)).longValue();
+    }
+}
@@ -2,11 +2,15 @@ package com.lovespace.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.lovespace.dto.ChatHistoryPage;
 import com.lovespace.entity.ChatMessage;
 import com.lovespace.mapper.ChatMessageMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Service
@@ -14,46 +18,132 @@ import java.util.List;
 public class ChatMessageService extends ServiceImpl<ChatMessageMapper, ChatMessage> {
 
     private final SpaceService spaceService;
+    private final ChatReadStateService chatReadStateService;
 
     public Long getPartnerId(Long userId) {
         return spaceService.getPartnerUserIdInPrimarySpace(userId);
     }
 
+    /**
+     * 两人会话的固定键，与发送方向无关
+     */
+    public static String conversationId(Long userId, Long partnerId) {
+        long a = Math.min(userId, partnerId);
+        long b = Math.max(userId, partnerId);
+        return a + "_" + b;
+    }
+
     public List<ChatMessage> getHistory(Long userId, Long partnerId, Long beforeId, int size) {
-        Long spaceId = spaceService.getOrCreatePrimarySpaceId(userId);
+        return getHistoryPage(userId, partnerId, beforeId, size).getMessages();
+    }
+
+    /**
+     * 按游标向前翻页：走 (conversation_id, created_at, id) 索引倒序取 size+1 条，多出的一条只用于判断是否还有更早的消息，
+     * 每页开销与历史总量无关。多实例时各节点号段交错，ID 不代表发送顺序，游标消息只用来定位其发送时间
+     */
+    public ChatHistoryPage getHistoryPage(Long userId, Long partnerId, Long cursor, int size) {
+        String conversationId = conversationId(userId, partnerId);
         LambdaQueryWrapper<ChatMessage> wrapper = new LambdaQueryWrapper<ChatMessage>()
-                .eq(ChatMessage::getSpaceId, spaceId)
-                .and(w -> w.eq(ChatMessage::getFromUserId, userId)
-                        .eq(ChatMessage::getToUserId, partnerId)
-                        .or()
-                        .eq(ChatMessage::getFromUserId, partnerId)
-                        .eq(ChatMessage::getToUserId, userId))
-                .orderByDesc(ChatMessage::getId);
-
-        if (beforeId != null && beforeId > 0) {
-            wrapper.lt(ChatMessage::getId, beforeId);
+                .eq(ChatMessage::getConversationId, conversationId);
+        if (cursor != null && cursor > 0) {
+            LocalDateTime cursorTime = getCreatedAt(conversationId, cursor);
+            if (cursorTime == null) {
+                wrapper.lt(ChatMessage::getId, cursor);
+            } else {
+                wrapper.and(w -> w.lt(ChatMessage::getCreatedAt, cursorTime)
+                        .or(o -> o.eq(ChatMessage::getCreatedAt, cursorTime).lt(ChatMessage::getId, cursor)));
+            }
         }
+        wrapper.orderByDesc(ChatMessage::getCreatedAt)
+                .orderByDesc(ChatMessage::getId)
+                .last("LIMIT " + (size + 1));
+        List<ChatMessage> rows = this.list(wrapper);
+
+        boolean hasMore = rows.size() > size;
+        List<ChatMessage> messages = new ArrayList<>(hasMore ? rows.subList(0, size) : rows);
+        Collections.reverse(messages);
+        applyReadStatus(messages, partnerId, conversationId);
 
-        wrapper.last("LIMIT " + size);
-        List<ChatMessage> list = this.list(wrapper);
-        list.sort((a, b) -> Long.compare(a.getId(), b.getId()));
-        return list;
+        ChatHistoryPage page = new ChatHistoryPage();
+        page.setMessages(messages);
+        page.setHasMore(hasMore);
+        page.setNextCursor(hasMore ? messages.get(0).getId() : null);
+        return page;
     }
 
-    public List<Long> markAllRead(Long userId, Long partnerId) {
-        Long spaceId = spaceService.getOrCreatePrimarySpaceId(userId);
-        LambdaQueryWrapper<ChatMessage> wrapper = new LambdaQueryWrapper<ChatMessage>()
-                .eq(ChatMessage::getSpaceId, spaceId)
-                .eq(ChatMessage::getToUserId, userId)
+    /**
+     * 会话中某条已落库消息的发送时间，不存在时返回 null
+     */
+    public LocalDateTime getCreatedAt(String conversationId, long messageId) {
+        ChatMessage message = this.getOne(new LambdaQueryWrapper<ChatMessage>()
+                .select(ChatMessage::getCreatedAt)
+                .eq(ChatMessage::getId, messageId)
+                .eq(ChatMessage::getConversationId, conversationId), false);
+        return message != null ? message.getCreatedAt() : null;
+    }
+
+    /**
+     * 断线补发：(created_at, id) 大于游标的消息按升序取一批，沿 (conversation_id, created_at, id) 索引顺序扫描
+     */
+    public List<ChatMessage> listAfter(Long userId, Long partnerId, LocalDateTime afterTime, long afterId, int size) {
+        String conversationId = conversationId(userId, partnerId);
+        List<ChatMessage> messages = this.list(new LambdaQueryWrapper<ChatMessage>()
+                .eq(ChatMessage::getConversationId, conversationId)
+                .and(w -> w.gt(ChatMessage::getCreatedAt, afterTime)
+                        .or(o -> o.eq(ChatMessage::getCreatedAt, afterTime).gt(ChatMessage::getId, afterId)))
+                .orderByAsc(ChatMessage::getCreatedAt)
+                .orderByAsc(ChatMessage::getId)
+                .last("LIMIT " + size));
+        applyReadStatus(messages, partnerId, conversationId);
+        return messages;
+    }
+
+    /**
+     * 按对方的已读水位填充 status，发给对方且不超过水位的消息为 read
+     */
+    private void applyReadStatus(List<ChatMessage> messages, Long partnerId, String conversationId) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        long watermark = chatReadStateService.getWatermark(partnerId, conversationId);
+        for (ChatMessage message : messages) {
+            boolean read = partnerId.equals(message.getToUserId()) && message.getId() <= watermark;
+            message.setStatus(read ? "read" : "sent");
+        }
+    }
+
+    /**
+     * 把自己在该会话的已读水位推进到 upToId（为空时取对方最新一条），
+     * 只读一条索引记录、改一行水位；水位有推进时返回新水位，否则返回 null
+     */
+    public Long markRead(Long userId, Long partnerId, Long upToId) {
+        String conversationId = conversationId(userId, partnerId);
+        ChatMessage latest = this.getOne(new LambdaQueryWrapper<ChatMessage>()
+                .select(ChatMessage::getId)
+                .eq(ChatMessage::getConversationId, conversationId)
                 .eq(ChatMessage::getFromUserId, partnerId)
-                .eq(ChatMessage::getStatus, "sent");
-        List<ChatMessage> list = this.list(wrapper);
-        if (list.isEmpty()) {
-            return List.of();
+                .le(upToId != null && upToId > 0, ChatMessage::getId, upToId)
+                .orderByDesc(ChatMessage::getId)
+                .last("LIMIT 1"), false);
+        if (latest == null) {
+            return null;
         }
-        ChatMessage update = new ChatMessage();
-        update.setStatus("read");
-        this.update(update, wrapper);
-        return list.stream().map(ChatMessage::getId).toList();
+        return chatReadStateService.advance(userId, conversationId, latest.getId()) ? latest.getId() : null;
+    }
+
+    public long getReadWatermark(Long userId, Long partnerId) {
+        return chatReadStateService.getWatermark(userId, conversationId(userId, partnerId));
+    }
+
+    /**
+     * 未读数：水位之后对方发来的消息数，只扫描未读的那一段索引
+     */
+    public long countUnread(Long userId, Long partnerId) {
+        String conversationId = conversationId(userId, partnerId);
+        long watermark = chatReadStateService.getWatermark(userId, conversationId);
+        return this.count(new LambdaQueryWrapper<ChatMessage>()
+                .eq(ChatMessage::getConversationId, conversationId)
+                .gt(ChatMessage::getId, watermark)
+                .eq(ChatMessage::getFromUserId, partnerId));
     }
 }
@@ -0,0 +1,173 @@
+package com.lovespace.service;
+
+import com.lovespace.entity.ChatMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 聊天消息写后持久化（write-behind）：消息先投递给对方，再由单个写线程合并成批量 INSERT。
+ * 每批最多等待 flush-interval-ms 或攒满 max-batch 条，返回的 future 在数据落库后完成，
+ * 调用方据此向发送方确认。队列满时退化为同步写入，对发送方形成背压。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatMessageWriter {
+
+    @Value("${chat.write-behind.flush-interval-ms:5}")
+    private long flushIntervalMs;
+
+    @Value("${chat.write-behind.max-batch:200}")
+    private int maxBatch;
+
+    @Value("${chat.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${chat.write-behind.max-attempts:3}")
+    private int maxAttempts;
+
+    private final ChatMessageService chatMessageService;
+
+    private BlockingQueue<PendingMessage> queue;
+    private Thread flusher;
+    private volatile boolean running;
+    /** 正在写入的一批，补发时与队列一起视为已发出但未落库 */
+    private volatile List<PendingMessage> inFlight = List.of();
+
+    private record PendingMessage(ChatMessage message, CompletableFuture<ChatMessage> durable) {
+    }
+
+    @PostConstruct
+    public void init() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        flusher = new Thread(this::run, "chat-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * 停止时写完队列中剩余的消息
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * 提交一条已分配ID的消息，落库后 future 完成
+     */
+    public CompletableFuture<ChatMessage> submit(ChatMessage message) {
+        PendingMessage pending = new PendingMessage(message, new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            writeEach(List.of(pending));
+        }
+        return pending.durable();
+    }
+
+    /**
+     * 某会话中发送时间不早于 since、已投递但尚未落库的消息，按 (created_at, id) 升序
+     */
+    public List<ChatMessage> pending(String conversationId, LocalDateTime since) {
+        List<ChatMessage> result = new ArrayList<>();
+        for (PendingMessage p : inFlight) {
+            collect(p.message(), conversationId, since, result);
+        }
+        for (PendingMessage p : queue) {
+            collect(p.message(), conversationId, since, result);
+        }
+        result.sort(Comparator.comparing(ChatMessage::getCreatedAt).thenComparing(ChatMessage::getId));
+        return result;
+    }
+
+    private void collect(ChatMessage message, String conversationId, LocalDateTime since, List<ChatMessage> result) {
+        if (conversationId.equals(message.getConversationId()) && !message.getCreatedAt().isBefore(since)) {
+            result.add(message);
+        }
+    }
+
+    private void run() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long wait = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || wait <= 0) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 被中断视为停止，循环继续把队列写完后退出
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                inFlight = List.copyOf(batch);
+                flush(batch);
+                inFlight = List.of();
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingMessage> batch) {
+        List<ChatMessage> rows = batch.stream().map(PendingMessage::message).toList();
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                chatMessageService.saveBatch(rows, rows.size());
+                batch.forEach(p -> p.durable().complete(p.message()));
+                return;
+            } catch (Exception e) {
+                log.warn("聊天消息批量写入失败, size={}, attempt={}", rows.size(), attempt, e);
+                sleepQuietly(attempt * 50L);
+            }
+        }
+        // 整批多次失败时逐条写入，避免一条异常数据拖累整批
+        writeEach(batch);
+    }
+
+    private void writeEach(List<PendingMessage> batch) {
+        for (PendingMessage pending : batch) {
+            try {
+                chatMessageService.save(pending.message());
+                pending.durable().complete(pending.message());
+            } catch (Exception e) {
+                log.error("聊天消息写入失败, id={}", pending.message().getId(), e);
+                pending.durable().completeExceptionally(e);
+            }
+        }
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.lovespace.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.lovespace.entity.ChatReadState;
+import com.lovespace.mapper.ChatReadStateMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+/**
+ * 每人每会话一条已读水位，标记已读只推进水位，不逐条更新消息状态
+ */
+@Service
+@RequiredArgsConstructor
+public class ChatReadStateService {
+
+    private final ChatReadStateMapper chatReadStateMapper;
+
+    /**
+     * 当前水位，从未读过时为 0
+     */
+    public long getWatermark(Long userId, String conversationId) {
+        ChatReadState state = chatReadStateMapper.selectOne(new LambdaQueryWrapper<ChatReadState>()
+                .select(ChatReadState::getLastReadMessageId)
+                .eq(ChatReadState::getUserId, userId)
+                .eq(ChatReadState::getConversationId, conversationId));
+        return state == null || state.getLastReadMessageId() == null ? 0L : state.getLastReadMessageId();
+    }
+
+    /**
+     * 水位只前进不后退，返回是否发生推进
+     */
+    public boolean advance(Long userId, String conversationId, long messageId) {
+        if (moveForward(userId, conversationId, messageId)) {
+            return true;
+        }
+        if (getWatermark(userId, conversationId) >= messageId) {
+            return false;
+        }
+        ChatReadState state = new ChatReadState();
+        state.setUserId(userId);
+        state.setConversationId(conversationId);
+        state.setLastReadMessageId(messageId);
+        try {
+            return chatReadStateMapper.insert(state) > 0;
+        } catch (DuplicateKeyException e) {
+            // 并发首次标记时另一方已插入，按条件推进即可
+            return moveForward(userId, conversationId, messageId);
+        }
+    }
+
+    private boolean moveForward(Long userId, String conversationId, long messageId) {
+        return chatReadStateMapper.update(null, new LambdaUpdateWrapper<ChatReadState>()
+                .eq(ChatReadState::getUserId, userId)
+                .eq(ChatReadState::getConversationId, conversationId)
+                .lt(ChatReadState::getLastReadMessageId, messageId)
+                .set(ChatReadState::getLastReadMessageId, messageId)) > 0;
+    }
+}
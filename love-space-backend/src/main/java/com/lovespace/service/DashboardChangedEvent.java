@@ -0,0 +1,39 @@
+package com.lovespace.service;
+
+/**
+ * 首页快照失效事件，事务提交后由 {@link DashboardService} 处理，并广播给其他节点
+ *
+ * @param spaceId 发生变化的空间，为 null 时表示所有空间
+ * @param part    变化的部分
+ */
+public record DashboardChangedEvent(Long spaceId, Part part) {
+
+    public enum Part {
+        /** 动态、评论、点赞、媒体及作者资料 */
+        MOMENTS,
+        /** 纪念日 */
+        ANNIVERSARIES
+    }
+
+    public static DashboardChangedEvent moments(Long spaceId) {
+        return new DashboardChangedEvent(spaceId, Part.MOMENTS);
+    }
+
+    public static DashboardChangedEvent anniversaries(Long spaceId) {
+        return new DashboardChangedEvent(spaceId, Part.ANNIVERSARIES);
+    }
+
+    /**
+     * 节点间广播的格式："部分:空间ID"，空间ID为空表示所有空间
+     */
+    public String encode() {
+        return part.name() + ":" + (spaceId == null ? "" : spaceId);
+    }
+
+    public static DashboardChangedEvent decode(String value) {
+        int separator = value.indexOf(':');
+        String space = value.substring(separator + 1);
+        return new DashboardChangedEvent(space.isEmpty() ? null : Long.valueOf(space),
+                Part.valueOf(value.substring(0, separator)));
+    }
+}
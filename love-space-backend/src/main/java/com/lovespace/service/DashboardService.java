@@ -1,81 +1,245 @@
 package com.lovespace.service;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.lovespace.cluster.ClusterEventBus;
 import com.lovespace.dto.DashboardData;
+import com.lovespace.dto.GuestDashboardResponse;
+import com.lovespace.dto.UserProfile;
 import com.lovespace.entity.Anniversary;
 import com.lovespace.entity.Moment;
+import com.lovespace.entity.MomentLike;
+import com.lovespace.mapper.MomentLikeMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+/**
+ * 首页仪表盘：每个空间的纪念日与最新动态各缓存一份快照，
+ * 动态/评论/点赞/纪念日变化时发布 {@link DashboardChangedEvent}，只让对应部分失效，下次读取时重建。
+ * 快照不含查看者相关数据，是否已点赞在读取时按快照中的点赞用户叠加；
+ * 小时、分钟、秒由客户端按开始日期自行计算。
+ * 访客首页同样按房主空间缓存一份公开快照，所有访客共用。
+ * 快照在每个节点的内存中，失效事件经 {@link ClusterEventBus} 广播，其他节点同步失效。
+ */
 @Service
 @RequiredArgsConstructor
 public class DashboardService {
     
+    private static final int RECENT_MOMENT_LIMIT = 5;
+    private static final int UPCOMING_DAYS = 30;
+    private static final String CLUSTER_TOPIC = "dashboard";
+
     @Value("${couple.start-date}")
     private String coupleStartDate;
     
     private final AnniversaryService anniversaryService;
     private final MomentService momentService;
+    private final SpaceService spaceService;
+    private final MomentLikeMapper likeMapper;
+    private final UserProfileCache userProfileCache;
+    private final ClusterEventBus clusterEventBus;
+
+    private final Map<Long, Snapshot<List<Anniversary>>> upcomingSnapshots = new ConcurrentHashMap<>();
+    private final Map<Long, Snapshot<RecentMoments>> momentSnapshots = new ConcurrentHashMap<>();
+    private final Map<Long, Snapshot<GuestSnapshot>> guestSnapshots = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicLong> anniversaryVersions = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicLong> momentVersions = new ConcurrentHashMap<>();
+    /** 针对所有空间的失效（如用户资料变化）计入全局版本 */
+    private final AtomicLong globalMomentVersion = new AtomicLong();
+
+    /**
+     * 快照：构建时的版本和日期（纪念日倒数天数按天变化）
+     */
+    private record Snapshot<T>(long version, LocalDate day, T value) {
+    }
+
+    /**
+     * 最新动态及每条动态的点赞用户
+     */
+    private record RecentMoments(List<Moment> moments, Map<Long, Set<Long>> likers) {
+    }
+
+    /**
+     * 访客首页共用部分：公开动态与两位主人的资料
+     */
+    private record GuestSnapshot(RecentMoments recent, GuestDashboardResponse.Couple couple) {
+    }
     
+    @PostConstruct
+    public void init() {
+        clusterEventBus.subscribe(CLUSTER_TOPIC, payload -> invalidate(DashboardChangedEvent.decode(payload)));
+    }
+
     /**
      * 获取首页仪表盘数据
      */
     public DashboardData getDashboardData(Long currentUserId) {
-        DashboardData data = new DashboardData();
-        
-        // 计算在一起的时间
-        LocalDate startDate = LocalDate.parse(coupleStartDate);
-        LocalDateTime startDateTime = LocalDateTime.of(startDate, LocalTime.MIDNIGHT);
-        LocalDateTime now = LocalDateTime.now();
-        
-        // 计算总天数
-        long totalDays = ChronoUnit.DAYS.between(startDate, LocalDate.now());
-        data.setTogetherDays(totalDays);
-        data.setStartDate(coupleStartDate);
-        
-        // 计算当天的小时、分钟、秒
-        Duration duration = Duration.between(startDateTime, now);
-        long totalSeconds = duration.getSeconds();
-        long hours = (totalSeconds % 86400) / 3600;
-        long minutes = (totalSeconds % 3600) / 60;
-        long seconds = totalSeconds % 60;
-        
-        data.setTogetherHours(hours);
-        data.setTogetherMinutes(minutes);
-        data.setTogetherSeconds(seconds);
-        
-        // 格式化文本
-        data.setTogetherText(formatTogetherText(totalDays, hours, minutes));
+        DashboardData data = buildTogether();
+        Long spaceId = spaceService.getOrCreatePrimarySpaceId(currentUserId);
         
         // 获取即将到来的纪念日
-        List<Anniversary> upcomingAnniversaries = anniversaryService.getUpcoming(currentUserId, 30);
-        data.setUpcomingAnniversaries(upcomingAnniversaries);
+        data.setUpcomingAnniversaries(snapshot(upcomingSnapshots, anniversaryVersion(spaceId), spaceId,
+                () -> anniversaryService.getUpcoming(currentUserId, UPCOMING_DAYS)));
         
         // 获取最新动态
-        List<Moment> recentMoments = momentService.getRecentMoments(currentUserId, 5);
-        data.setRecentMoments(recentMoments);
+        RecentMoments recent = snapshot(momentSnapshots, momentVersion(spaceId), spaceId,
+                () -> loadRecent(momentService.getRecentMoments(currentUserId, null, RECENT_MOMENT_LIMIT)));
+        data.setRecentMoments(withLiked(recent, currentUserId));
         
         return data;
     }
 
-    public DashboardData getHostDashboardData(Long hostUserId, Long viewerUserId) {
+    /**
+     * 访客首页：纪念日与房主共用同一快照，公开动态和主人资料共用访客快照，只叠加当前访客的点赞状态
+     */
+    public GuestDashboardResponse getGuestDashboard(Long hostUserId, Long viewerUserId) {
+        Long spaceId = spaceService.getOrCreatePrimarySpaceId(hostUserId);
+        DashboardData data = buildTogether();
+        data.setUpcomingAnniversaries(snapshot(upcomingSnapshots, anniversaryVersion(spaceId), spaceId,
+                () -> anniversaryService.getUpcoming(hostUserId, UPCOMING_DAYS)));
+
+        GuestSnapshot guest = snapshot(guestSnapshots, momentVersion(spaceId), spaceId, () -> {
+            RecentMoments recent = loadRecent(
+                    momentService.getRecentPublicMoments(hostUserId, null, RECENT_MOMENT_LIMIT));
+            Long partnerId = spaceService.getPartnerUserIdInPrimarySpace(hostUserId);
+            // 快照会一直使用到下次失效，主人资料直接读库，不沿用本节点缓存中可能过期的资料
+            Map<Long, UserProfile> profiles = userProfileCache.reload(
+                    partnerId == null ? List.of(hostUserId) : List.of(hostUserId, partnerId));
+            GuestDashboardResponse.Couple couple = new GuestDashboardResponse.Couple();
+            couple.setUser1(profiles.get(hostUserId));
+            couple.setUser2(partnerId == null ? null : profiles.get(partnerId));
+            return new GuestSnapshot(recent, couple);
+        });
+        data.setRecentMoments(withLiked(guest.recent(), viewerUserId));
+
+        GuestDashboardResponse response = new GuestDashboardResponse();
+        response.setDashboard(data);
+        response.setCouple(guest.couple());
+        return response;
+    }
+
+    /**
+     * 事务提交后让对应部分失效，再通知其他节点；提交前构建的快照版本号已过期，不会再被使用
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDashboardChanged(DashboardChangedEvent event) {
+        invalidate(event);
+        clusterEventBus.broadcast(CLUSTER_TOPIC, event.encode());
+    }
+
+    private void invalidate(DashboardChangedEvent event) {
+        boolean moments = event.part() == DashboardChangedEvent.Part.MOMENTS;
+        if (event.spaceId() == null) {
+            if (moments) {
+                globalMomentVersion.incrementAndGet();
+                momentSnapshots.clear();
+                guestSnapshots.clear();
+            } else {
+                anniversaryVersions.values().forEach(AtomicLong::incrementAndGet);
+                upcomingSnapshots.clear();
+            }
+            return;
+        }
+        if (moments) {
+            counter(momentVersions, event.spaceId()).incrementAndGet();
+            momentSnapshots.remove(event.spaceId());
+            guestSnapshots.remove(event.spaceId());
+        } else {
+            counter(anniversaryVersions, event.spaceId()).incrementAndGet();
+            upcomingSnapshots.remove(event.spaceId());
+        }
+    }
+
+    /**
+     * 版本和日期都一致时返回快照，否则重新构建；构建期间发生变化则不缓存本次结果
+     */
+    private <T> T snapshot(Map<Long, Snapshot<T>> snapshots, Supplier<Long> version, Long spaceId, Supplier<T> loader) {
+        LocalDate today = LocalDate.now();
+        long current = version.get();
+        Snapshot<T> cached = snapshots.get(spaceId);
+        if (cached != null && cached.version() == current && cached.day().equals(today)) {
+            return cached.value();
+        }
+        T value = loader.get();
+        if (version.get() == current) {
+            snapshots.put(spaceId, new Snapshot<>(current, today, value));
+        }
+        return value;
+    }
+
+    private Supplier<Long> anniversaryVersion(Long spaceId) {
+        return () -> counter(anniversaryVersions, spaceId).get();
+    }
+
+    private Supplier<Long> momentVersion(Long spaceId) {
+        return () -> counter(momentVersions, spaceId).get() + globalMomentVersion.get();
+    }
+
+    private AtomicLong counter(Map<Long, AtomicLong> versions, Long spaceId) {
+        return versions.computeIfAbsent(spaceId, k -> new AtomicLong());
+    }
+
+    private RecentMoments loadRecent(List<Moment> moments) {
+        Map<Long, Set<Long>> likers = new HashMap<>();
+        List<Long> momentIds = moments.stream().map(Moment::getId).toList();
+        if (!momentIds.isEmpty()) {
+            for (MomentLike like : likeMapper.selectList(new LambdaQueryWrapper<MomentLike>()
+                    .select(MomentLike::getMomentId, MomentLike::getUserId)
+                    .in(MomentLike::getMomentId, momentIds))) {
+                likers.computeIfAbsent(like.getMomentId(), k -> new HashSet<>()).add(like.getUserId());
+            }
+        }
+        return new RecentMoments(moments, likers);
+    }
+
+    /**
+     * 复制快照中的动态并叠加当前用户的点赞状态，快照本身不被修改
+     */
+    private List<Moment> withLiked(RecentMoments recent, Long viewerUserId) {
+        return recent.moments().stream().map(source -> {
+            Moment moment = new Moment();
+            BeanUtils.copyProperties(source, moment);
+            if (viewerUserId != null) {
+                moment.setLiked(recent.likers().getOrDefault(source.getId(), Set.of()).contains(viewerUserId));
+            }
+            return moment;
+        }).toList();
+    }
+
+    /**
+     * 在一起的天数与文本，当天的时分秒仅作为初始值，由客户端按开始日期实时计算
+     */
+    private DashboardData buildTogether() {
         DashboardData data = new DashboardData();
 
+        // 计算在一起的时间
         LocalDate startDate = LocalDate.parse(coupleStartDate);
         LocalDateTime startDateTime = LocalDateTime.of(startDate, LocalTime.MIDNIGHT);
         LocalDateTime now = LocalDateTime.now();
 
+        // 计算总天数
         long totalDays = ChronoUnit.DAYS.between(startDate, LocalDate.now());
         data.setTogetherDays(totalDays);
         data.setStartDate(coupleStartDate);
 
+        // 计算当天的小时、分钟、秒
         Duration duration = Duration.between(startDateTime, now);
         long totalSeconds = duration.getSeconds();
         long hours = (totalSeconds % 86400) / 3600;
@@ -85,14 +249,9 @@ public class DashboardService {
         data.setTogetherHours(hours);
         data.setTogetherMinutes(minutes);
         data.setTogetherSeconds(seconds);
-        data.setTogetherText(formatTogetherText(totalDays, hours, minutes));
-
-        List<Anniversary> upcomingAnniversaries = anniversaryService.getUpcoming(hostUserId, 30);
-        data.setUpcomingAnniversaries(upcomingAnniversaries);
-
-        List<Moment> recentMoments = momentService.getRecentPublicMoments(hostUserId, viewerUserId, 5);
-        data.setRecentMoments(recentMoments);
 
+        // 格式化文本
+        data.setTogetherText(formatTogetherText(totalDays, hours, minutes));
         return data;
     }
     
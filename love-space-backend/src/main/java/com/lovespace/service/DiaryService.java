@@ -4,22 +4,30 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.lovespace.common.Result;
+import com.lovespace.dto.DiaryCalendarDay;
+import com.lovespace.dto.UserProfile;
 import com.lovespace.entity.Diary;
-import com.lovespace.entity.User;
 import com.lovespace.mapper.DiaryMapper;
-import com.lovespace.mapper.UserMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 @Service
 @RequiredArgsConstructor
 public class DiaryService extends ServiceImpl<DiaryMapper, Diary> {
     
-    private final UserMapper userMapper;
+    private final UserProfileCache userProfileCache;
     private final SpaceService spaceService;
     
     /**
@@ -78,9 +86,7 @@ public class DiaryService extends ServiceImpl<DiaryMapper, Diary> {
         Page<Diary> diaryPage = this.page(page, wrapper);
         
         // 填充用户信息
-        for (Diary diary : diaryPage.getRecords()) {
-            fillDiaryUser(diary);
-        }
+        fillDiaryUsers(diaryPage.getRecords());
         
         return Result.success(diaryPage);
     }
@@ -105,13 +111,80 @@ public class DiaryService extends ServiceImpl<DiaryMapper, Diary> {
                 .between(Diary::getDiaryDate, startDate, endDate)
                 .orderByAsc(Diary::getDiaryDate));
         
-        for (Diary diary : diaries) {
-            fillDiaryUser(diary);
-        }
+        fillDiaryUsers(diaries);
         
         return Result.success(diaries);
     }
     
+    /**
+     * 某月日历摘要：只查 id、作者、心情和日期，走 idx_space_date_user 覆盖索引，不读正文
+     */
+    public Result<List<DiaryCalendarDay>> getCalendar(Long userId, Integer year, Integer month) {
+        YearMonth yearMonth = YearMonth.of(year, month);
+        Long spaceId = spaceService.getOrCreatePrimarySpaceId(userId);
+        Long partnerId = spaceService.getPartnerUserIdInPrimarySpace(userId);
+        List<Diary> rows = this.list(new LambdaQueryWrapper<Diary>()
+                .select(Diary::getId, Diary::getUserId, Diary::getMood, Diary::getDiaryDate)
+                .eq(Diary::getSpaceId, spaceId)
+                .between(Diary::getDiaryDate, yearMonth.atDay(1), yearMonth.atEndOfMonth())
+                .and(w -> {
+                    w.eq(Diary::getUserId, userId);
+                    if (partnerId != null) {
+                        w.or(p -> p.eq(Diary::getUserId, partnerId).eq(Diary::getVisibility, "both"));
+                    }
+                })
+                .orderByAsc(Diary::getDiaryDate));
+
+        Map<Long, UserProfile> users = userProfileCache.getAll(rows.stream()
+                .map(Diary::getUserId)
+                .distinct()
+                .toList());
+        Map<LocalDate, DiaryCalendarDay> days = new LinkedHashMap<>();
+        for (Diary row : rows) {
+            DiaryCalendarDay day = days.computeIfAbsent(row.getDiaryDate(), date -> {
+                DiaryCalendarDay d = new DiaryCalendarDay();
+                d.setDate(date);
+                d.setEntries(new ArrayList<>(2));
+                return d;
+            });
+            DiaryCalendarDay.Entry entry = new DiaryCalendarDay.Entry();
+            entry.setId(row.getId());
+            entry.setUserId(row.getUserId());
+            entry.setMood(row.getMood());
+            UserProfile user = users.get(row.getUserId());
+            entry.setNickname(user != null ? user.getNickname() : null);
+            if (userId.equals(row.getUserId())) {
+                day.getEntries().add(0, entry);
+            } else {
+                day.getEntries().add(entry);
+            }
+        }
+        return Result.success(new ArrayList<>(days.values()));
+    }
+
+    /**
+     * 日历摘要的 ETag，内容（含作者昵称）不变时客户端可直接使用缓存
+     */
+    public String calendarEtag(List<DiaryCalendarDay> days) {
+        StringBuilder sb = new StringBuilder();
+        for (DiaryCalendarDay day : days) {
+            sb.append(day.getDate());
+            for (DiaryCalendarDay.Entry entry : day.getEntries()) {
+                sb.append('|').append(entry.getId())
+                        .append(',').append(entry.getUserId())
+                        .append(',').append(entry.getMood())
+                        .append(',').append(entry.getNickname());
+            }
+            sb.append(';');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * 获取某天的日记
      */
@@ -189,10 +262,16 @@ public class DiaryService extends ServiceImpl<DiaryMapper, Diary> {
      * 填充日记用户信息
      */
     private void fillDiaryUser(Diary diary) {
-        User user = userMapper.selectById(diary.getUserId());
-        if (user != null) {
-            user.setPassword(null);
+        diary.setUser(userProfileCache.get(diary.getUserId()));
+    }
+
+    private void fillDiaryUsers(List<Diary> diaries) {
+        Map<Long, UserProfile> users = userProfileCache.getAll(diaries.stream()
+                .map(Diary::getUserId)
+                .filter(Objects::nonNull)
+                .toList());
+        for (Diary diary : diaries) {
+            diary.setUser(users.get(diary.getUserId()));
         }
-        diary.setUser(user);
     }
 }
@@ -1,33 +1,41 @@
 package com.lovespace.service;
 
-import com.aliyun.oss.OSS;
-import com.aliyun.oss.OSSClientBuilder;
-import com.aliyun.oss.model.ObjectMetadata;
 import com.lovespace.common.Result;
 import com.lovespace.config.OssProperties;
+import com.lovespace.entity.MomentMedia;
+import com.lovespace.storage.ObjectStorage;
+import com.lovespace.util.ImageUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
-import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Service
@@ -41,6 +49,31 @@ public class FileService {
     
     @Autowired(required = false)
     private OssProperties ossProperties;
+
+    @Autowired
+    private ObjectStorage mediaStorage;
+
+    @Autowired
+    private MediaObjectService mediaObjectService;
+
+    @Autowired
+    private LocalThumbnailService thumbnailService;
+
+    @Value("${upload.stream-max-size:${spring.servlet.multipart.max-file-size:100MB}}")
+    private DataSize streamMaxSize;
+
+    @Value("${upload.parallelism:4}")
+    private int uploadParallelism;
+
+    @Value("${upload.queue-capacity:64}")
+    private int uploadQueueCapacity;
+
+    /** 头像、聊天图片等不生成衍生图的图片，超过该大小时上传时直接压缩 */
+    private static final long IMAGE_OPTIMIZE_MIN_BYTES = 400 * 1024;
+    private static final int IMAGE_OPTIMIZE_MAX_SIDE = 1600;
+
+    /** 多文件上传线程池，队列满时由请求线程自行上传 */
+    private ThreadPoolExecutor uploadExecutor;
     
     private static final List<String> IMAGE_TYPES = List.of("image/jpeg", "image/png", "image/gif", "image/webp");
     private static final List<String> VIDEO_TYPES = List.of("video/mp4", "video/quicktime", "video/x-msvideo", "video/webm");
@@ -55,47 +88,97 @@ public class FileService {
             "audio/x-m4a",
             "audio/m4a"
     );
-
-    private static final long IMAGE_OPTIMIZE_MIN_BYTES = 400 * 1024;
-    private static final int IMAGE_OPTIMIZE_MAX_SIDE = 1600;
     
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        uploadExecutor = new ThreadPoolExecutor(uploadParallelism, uploadParallelism, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(uploadQueueCapacity), r -> {
+            Thread t = new Thread(r, "file-upload-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        uploadExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdown();
+    }
+
     /**
-     * 上传单个文件
+     * 上传单个文件（头像、聊天媒体），较大的 JPEG/PNG 会缩放压缩后保存
      */
     public Result<String> uploadFile(MultipartFile file) {
+        return uploadFile(file, true);
+    }
+
+    /**
+     * @param optimizeImage 是否在上传时压缩图片；动态图片保留原图，由 MediaDerivativeService 生成衍生图
+     */
+    private Result<String> uploadFile(MultipartFile file, boolean optimizeImage) {
         if (file.isEmpty()) {
             return Result.error("文件不能为空");
         }
         
-        String contentType = normalizeContentType(file.getContentType());
-        String subDir;
-        
-        if (IMAGE_TYPES.contains(contentType)) {
-            subDir = "images";
-        } else if (VIDEO_TYPES.contains(contentType)) {
-            subDir = "videos";
-        } else if (AUDIO_TYPES.contains(contentType)) {
-            subDir = "audios";
-        } else {
+        String subDir = resolveSubDir(normalizeContentType(file.getContentType()));
+        if (subDir == null) {
             return Result.error("不支持的文件类型");
         }
         
         try {
-            String url;
-            if (isOssEnabled()) {
-                url = uploadToOss(file, subDir);
-            } else if ("images".equals(subDir) && shouldOptimizeImage(file, contentType)) {
-                url = saveOptimizedImage(file, contentType);
-            } else {
-                url = saveFile(file, subDir);
-            }
+            String contentType = normalizeContentType(file.getContentType());
+            String url = optimizeImage && shouldOptimizeImage(file, contentType)
+                    ? storeOptimizedImage(file, contentType, subDir)
+                    : mediaObjectService.store(file, subDir);
+            return Result.success("上传成功", url);
+        } catch (IOException e) {
+            log.error("文件上传失败", e);
+            return Result.error("文件上传失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 流式上传单个文件：请求体直接写入存储，边写边校验大小，不经过容器的 multipart 临时文件
+     *
+     * @param contentLength 请求声明的长度，未知时为 -1
+     */
+    public Result<String> uploadStream(InputStream in, String contentType, long contentLength, String fileName) {
+        String subDir = resolveSubDir(normalizeContentType(contentType));
+        if (subDir == null) {
+            return Result.error("不支持的文件类型");
+        }
+        if (contentLength == 0) {
+            return Result.error("文件不能为空");
+        }
+        long maxBytes = streamMaxSize.toBytes();
+        if (contentLength > maxBytes) {
+            return Result.error("文件大小超过限制");
+        }
+
+        try {
+            String url = mediaObjectService.storeStream(new SizeLimitedInputStream(in, maxBytes),
+                    contentLength, normalizeContentType(contentType), fileName, subDir);
             return Result.success("上传成功", url);
+        } catch (FileSizeExceededException e) {
+            return Result.error("文件大小超过限制");
         } catch (IOException e) {
             log.error("文件上传失败", e);
             return Result.error("文件上传失败：" + e.getMessage());
         }
     }
 
+    private String resolveSubDir(String contentType) {
+        if (IMAGE_TYPES.contains(contentType)) {
+            return "images";
+        } else if (VIDEO_TYPES.contains(contentType)) {
+            return "videos";
+        } else if (AUDIO_TYPES.contains(contentType)) {
+            return "audios";
+        }
+        return null;
+    }
+
     private String normalizeContentType(String value) {
         if (value == null) {
             return null;
@@ -106,140 +189,179 @@ public class FileService {
     }
     
     /**
-     * 上传多个文件
+     * 上传多个文件：并发上传，结果顺序与入参一致；任一文件失败时取消其余文件并删除已保存的文件
      */
     public Result<List<String>> uploadFiles(MultipartFile[] files) {
+        return uploadFiles(files, true);
+    }
+
+    private Result<List<String>> uploadFiles(MultipartFile[] files, boolean optimizeImage) {
         if (files == null || files.length == 0) {
             return Result.error("文件不能为空");
         }
-        
-        List<String> urls = new ArrayList<>();
-        for (MultipartFile file : files) {
-            Result<String> result = uploadFile(file);
+        if (files.length == 1) {
+            Result<String> result = uploadFile(files[0], optimizeImage);
             if (result.getCode() != 200) {
                 return Result.error(result.getMessage());
             }
-            urls.add(result.getData());
+            return Result.success("上传成功", List.of(result.getData()));
         }
-        
-        return Result.success("上传成功", urls);
+
+        String[] urls = new String[files.length];
+        List<String> stored = new ArrayList<>();
+        AtomicBoolean aborted = new AtomicBoolean();
+        ExecutorCompletionService<Result<String>> completion = new ExecutorCompletionService<>(uploadExecutor);
+        Map<Future<Result<String>>, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < files.length; i++) {
+            MultipartFile file = files[i];
+            indexes.put(completion.submit(() -> {
+                Result<String> result = uploadFile(file, optimizeImage);
+                if (result.getCode() == 200) {
+                    synchronized (stored) {
+                        // 批次已失败时自行清理，避免残留文件
+                        if (aborted.get()) {
+                            discardUpload(result.getData());
+                        } else {
+                            stored.add(result.getData());
+                        }
+                    }
+                }
+                return result;
+            }), i);
+        }
+
+        String error = null;
+        for (int done = 0; done < files.length && error == null; done++) {
+            try {
+                Future<Result<String>> future = completion.take();
+                Result<String> result = future.get();
+                if (result.getCode() == 200) {
+                    urls[indexes.get(future)] = result.getData();
+                } else {
+                    error = result.getMessage();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = "上传被中断";
+            } catch (ExecutionException e) {
+                log.error("文件上传失败", e.getCause());
+                error = "文件上传失败：" + e.getCause().getMessage();
+            }
+        }
+        if (error == null) {
+            return Result.success("上传成功", Arrays.asList(urls));
+        }
+
+        // 未开始的文件直接取消，进行中的文件完成后自行删除
+        indexes.keySet().forEach(future -> future.cancel(false));
+        List<String> rollback;
+        synchronized (stored) {
+            aborted.set(true);
+            rollback = new ArrayList<>(stored);
+        }
+        rollback.forEach(this::discardUpload);
+        return Result.error(error);
     }
-    
+
     /**
-     * 保存文件
+     * 上传动态附带的媒体文件，忽略空文件；任一文件失败时整批失败
      */
-    private String saveFile(MultipartFile file, String subDir) throws IOException {
-        String dateDir = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
-        String dirPath = uploadPath + File.separator + subDir + File.separator + dateDir;
-        ensureDir(dirPath);
-        
-        String originalFilename = file.getOriginalFilename();
-        String extension = "";
-        if (originalFilename != null && originalFilename.contains(".")) {
-            extension = originalFilename.substring(originalFilename.lastIndexOf("."));
+    public Result<List<MomentMedia>> uploadMomentMedia(MultipartFile[] files) {
+        List<MomentMedia> mediaList = new ArrayList<>();
+        if (files == null) {
+            return Result.success(mediaList);
+        }
+        MultipartFile[] nonEmpty = Arrays.stream(files)
+                .filter(file -> file != null && !file.isEmpty())
+                .toArray(MultipartFile[]::new);
+        if (nonEmpty.length == 0) {
+            return Result.success(mediaList);
+        }
+        Result<List<String>> uploadResult = uploadFiles(nonEmpty, false);
+        if (uploadResult.getCode() != 200) {
+            return Result.error(uploadResult.getMessage());
+        }
+        List<String> urls = uploadResult.getData();
+        for (int i = 0; i < nonEmpty.length; i++) {
+            MomentMedia media = new MomentMedia();
+            String url = urls.get(i);
+            String type = getFileType(normalizeContentType(nonEmpty[i].getContentType()));
+            media.setUrl(url);
+            media.setType(type);
+            if ("image".equals(type)) {
+                media.setThumbnail(buildThumbnailUrl(url));
+            }
+            mediaList.add(media);
         }
-        String newFilename = UUID.randomUUID().toString().replace("-", "") + extension;
-        
-        String filePath = dirPath + File.separator + newFilename;
-        file.transferTo(new File(filePath));
-        
-        return urlPrefix + "/" + subDir + "/" + dateDir + "/" + newFilename;
+        return Result.success(mediaList);
     }
-
+    
+    /**
+     * 支持图片处理的存储（OSS）按 URL 参数缩放，不在上传时压缩
+     */
     private boolean shouldOptimizeImage(MultipartFile file, String contentType) {
-        if (file == null || contentType == null) {
+        if (mediaStorage.supportsImageProcessing()) {
             return false;
         }
         if (!("image/jpeg".equals(contentType) || "image/png".equals(contentType))) {
             return false;
         }
-        if (file.getSize() < IMAGE_OPTIMIZE_MIN_BYTES) {
-            return false;
-        }
-        String originalFilename = file.getOriginalFilename();
-        if (originalFilename != null && originalFilename.toLowerCase().endsWith(".gif")) {
-            return false;
-        }
-        return true;
+        return file.getSize() >= IMAGE_OPTIMIZE_MIN_BYTES;
     }
 
-    private String saveOptimizedImage(MultipartFile file, String contentType) throws IOException {
-        String dateDir = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
-        String dirPath = uploadPath + File.separator + "images" + File.separator + dateDir;
-        ensureDir(dirPath);
-
-        String extension = "image/png".equals(contentType) ? ".png" : ".jpg";
-        String newFilename = UUID.randomUUID().toString().replace("-", "") + extension;
-        File outFile = new File(dirPath + File.separator + newFilename);
-
+    /**
+     * 缩放到最长边 1600 并重新编码后保存，无法解码时保存原文件
+     */
+    private String storeOptimizedImage(MultipartFile file, String contentType, String subDir) throws IOException {
         BufferedImage source;
         try (InputStream in = file.getInputStream()) {
             source = ImageIO.read(in);
         }
         if (source == null) {
-            file.transferTo(outFile);
-            return urlPrefix + "/images/" + dateDir + "/" + newFilename;
-        }
-
-        int sourceW = source.getWidth();
-        int sourceH = source.getHeight();
-        int maxSide = Math.max(sourceW, sourceH);
-        double scale = maxSide > IMAGE_OPTIMIZE_MAX_SIDE ? (double) IMAGE_OPTIMIZE_MAX_SIDE / (double) maxSide : 1.0;
-        int targetW = Math.max(1, (int) Math.round(sourceW * scale));
-        int targetH = Math.max(1, (int) Math.round(sourceH * scale));
-
-        boolean outputPng = "image/png".equals(contentType);
-        BufferedImage target = new BufferedImage(
-                targetW,
-                targetH,
-                outputPng ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB
-        );
-        Graphics2D g2d = target.createGraphics();
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        if (!outputPng) {
-            g2d.setColor(Color.WHITE);
-            g2d.fillRect(0, 0, targetW, targetH);
-        }
-        g2d.drawImage(source, 0, 0, targetW, targetH, null);
-        g2d.dispose();
-
-        if (outputPng) {
-            ImageIO.write(target, "png", outFile);
-        } else {
-            writeJpeg(target, outFile, 0.85f);
-        }
-
-        return urlPrefix + "/images/" + dateDir + "/" + newFilename;
+            return mediaObjectService.store(file, subDir);
+        }
+        boolean png = "image/png".equals(contentType);
+        byte[] bytes = ImageUtil.encode(ImageUtil.fitWithin(source, IMAGE_OPTIMIZE_MAX_SIDE, png), png, 0.85f);
+        return mediaObjectService.storeStream(new ByteArrayInputStream(bytes), bytes.length, contentType,
+                png ? "image.png" : "image.jpg", subDir);
+    }
+
+    /**
+     * 登记一次对上传文件的引用（动态媒体、聊天媒体、头像）
+     */
+    public void retainFile(String url) {
+        mediaObjectService.retain(url);
     }
 
-    private void writeJpeg(BufferedImage image, File outFile, float quality) throws IOException {
-        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
-        ImageWriteParam param = writer.getDefaultWriteParam();
-        if (param.canWriteCompressed()) {
-            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-            param.setCompressionQuality(quality);
+    /**
+     * 释放业务数据对文件的引用：去重对象在最后一个引用释放后删除（衍生图随之删除），
+     * 未登记的历史文件连同其缩略图、展示图直接删除
+     */
+    public void releaseFile(String url, String... derivedUrls) {
+        if (url == null || url.isBlank() || mediaObjectService.release(url)) {
+            return;
+        }
+        deleteFile(url);
+        for (String derivedUrl : derivedUrls) {
+            if (derivedUrl != null && !derivedUrl.isBlank() && !derivedUrl.equals(url)) {
+                deleteFile(derivedUrl);
+            }
         }
-        try (ImageOutputStream ios = ImageIO.createImageOutputStream(outFile)) {
-            writer.setOutput(ios);
-            writer.write(null, new IIOImage(image, null, null), param);
-        } finally {
-            writer.dispose();
+        if (!mediaStorage.supportsImageProcessing()) {
+            thumbnailService.deleteVariants(mediaStorage.resolveKey(url));
         }
     }
 
-    private void ensureDir(String dirPath) {
-        File rootDir = new File(uploadPath);
-        if (!rootDir.exists()) {
-            rootDir.mkdirs();
-        }
-        File dir = new File(dirPath);
-        if (!dir.exists()) {
-            dir.mkdirs();
+    /**
+     * 撤销一次尚未被引用的上传：去重对象可能已被其他内容复用，交给定期清理处理
+     */
+    public Result<Void> discardUpload(String url) {
+        if (mediaObjectService.isTracked(url)) {
+            return Result.success("删除成功", null);
         }
+        return deleteFile(url);
     }
-    
+
     /**
      * 删除文件
      */
@@ -247,9 +369,10 @@ public class FileService {
         if (url == null) {
             return Result.error("无效的文件URL");
         }
-        if (isOssEnabled() && isOssUrl(url)) {
+        String ossKey = isOssEnabled() ? mediaStorage.resolveKey(url) : null;
+        if (ossKey != null) {
             try {
-                deleteFromOss(url);
+                mediaStorage.delete(ossKey);
             } catch (Exception e) {
                 log.error("删除OSS文件失败", e);
             }
@@ -309,6 +432,9 @@ public class FileService {
         return "unknown";
     }
 
+    /**
+     * 缩略图 URL：OSS 由 x-oss-process 实时处理，本地存储由 LocalThumbnailService 按同样的参数生成
+     */
     public String buildThumbnailUrl(String url) {
         if (url == null || url.isBlank()) {
             return url;
@@ -327,126 +453,52 @@ public class FileService {
     }
     
     private boolean isOssEnabled() {
-        if (ossProperties == null) {
-            return false;
-        }
-        if (!ossProperties.isEnabled()) {
-            return false;
-        }
-        if (ossProperties.getEndpoint() == null || ossProperties.getEndpoint().isBlank()) {
-            return false;
-        }
-        if (ossProperties.getAccessKeyId() == null || ossProperties.getAccessKeyId().isBlank()) {
-            return false;
-        }
-        if (ossProperties.getAccessKeySecret() == null || ossProperties.getAccessKeySecret().isBlank()) {
-            return false;
-        }
-        if (ossProperties.getBucket() == null || ossProperties.getBucket().isBlank()) {
-            return false;
-        }
-        return true;
-    }
-    
-    private String uploadToOss(MultipartFile file, String subDir) throws IOException {
-        String dateDir = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
-        String basePath = ossProperties.getBasePath();
-        if (basePath == null) {
-            basePath = "";
-        } else {
-            basePath = basePath.trim();
-        }
-        String originalFilename = file.getOriginalFilename();
-        String extension = "";
-        if (originalFilename != null && originalFilename.contains(".")) {
-            extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-        }
-        String newFilename = UUID.randomUUID().toString().replace("-", "") + extension;
-        StringBuilder keyBuilder = new StringBuilder();
-        if (!basePath.isEmpty()) {
-            keyBuilder.append(basePath);
-            if (!basePath.endsWith("/")) {
-                keyBuilder.append("/");
-            }
-        }
-        keyBuilder.append(subDir).append("/").append(dateDir).append("/").append(newFilename);
-        String objectKey = keyBuilder.toString();
-        OSS client = new OSSClientBuilder().build(ossProperties.getEndpoint(), ossProperties.getAccessKeyId(), ossProperties.getAccessKeySecret());
-        ObjectMetadata metadata = new ObjectMetadata();
-        String contentType = file.getContentType();
-        if (contentType != null && !contentType.isBlank()) {
-            metadata.setContentType(contentType);
-        }
-        metadata.setContentDisposition("inline");
-        if (file.getSize() > 0) {
-            metadata.setContentLength(file.getSize());
-        }
-        metadata.setCacheControl("public, max-age=31536000, immutable");
-        try (InputStream in = file.getInputStream()) {
-            client.putObject(ossProperties.getBucket(), objectKey, in, metadata);
-        } finally {
-            client.shutdown();
-        }
-        String domain = ossProperties.getDomain();
-        String baseUrl;
-        if (domain != null && !domain.isBlank()) {
-            baseUrl = domain;
-        } else {
-            baseUrl = "https://" + ossProperties.getBucket() + "." + ossProperties.getEndpoint();
-        }
-        while (baseUrl.endsWith("/")) {
-            baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
-        }
-        return baseUrl + "/" + objectKey;
+        return ossProperties != null && ossProperties.isUsable();
     }
-    
-    private boolean isOssUrl(String url) {
-        if (ossProperties == null) {
-            return false;
-        }
-        String domain = ossProperties.getDomain();
-        if (domain != null && !domain.isBlank() && url.startsWith(domain)) {
-            return true;
-        }
-        String endpoint = ossProperties.getEndpoint();
-        String bucket = ossProperties.getBucket();
-        if (endpoint == null || endpoint.isBlank() || bucket == null || bucket.isBlank()) {
-            return false;
+
+    private static class FileSizeExceededException extends IOException {
+
+        FileSizeExceededException() {
+            super("文件大小超过限制");
         }
-        String prefix = "https://" + bucket + "." + endpoint;
-        return url.startsWith(prefix);
     }
-    
-    private void deleteFromOss(String url) {
-        String domain = ossProperties.getDomain();
-        String endpoint = ossProperties.getEndpoint();
-        String bucket = ossProperties.getBucket();
-        String prefix;
-        if (domain != null && !domain.isBlank() && url.startsWith(domain)) {
-            prefix = domain;
-        } else {
-            prefix = "https://" + bucket + "." + endpoint;
-        }
-        String key = url.substring(prefix.length());
-        int queryIndex = key.indexOf("?");
-        if (queryIndex >= 0) {
-            key = key.substring(0, queryIndex);
-        }
-        int fragmentIndex = key.indexOf("#");
-        if (fragmentIndex >= 0) {
-            key = key.substring(0, fragmentIndex);
+
+    /**
+     * 读取超过上限时立即中断，避免超大请求体写满磁盘
+     */
+    private static class SizeLimitedInputStream extends FilterInputStream {
+
+        private final long maxBytes;
+        private long count;
+
+        SizeLimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
         }
-        while (key.startsWith("/")) {
-            key = key.substring(1);
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                checkLimit(1);
+            }
+            return b;
         }
-        if (key.isEmpty()) {
-            return;
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                checkLimit(n);
+            }
+            return n;
         }
-        OSS client = new OSSClientBuilder().build(endpoint, ossProperties.getAccessKeyId(), ossProperties.getAccessKeySecret());
-        try {
-            client.deleteObject(bucket, key);
-        } finally {
-            client.shutdown();
+
+        private void checkLimit(int n) throws IOException {
+            count += n;
+            if (count > maxBytes) {
+                throw new FileSizeExceededException();
+            }
         }
     }
 }
@@ -0,0 +1,186 @@
+package com.lovespace.service;
+
+import com.lovespace.storage.LocalObjectStorage;
+import com.lovespace.util.ImageUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 本地存储的缩略图：兼容 OSS 的 x-oss-process=image/resize,w_N/quality,q_Q 参数，
+ * 首次访问时生成并按尺寸缓存到 upload.path/derivatives/ 下，之后直接读取磁盘文件。
+ */
+@Slf4j
+@Service
+public class LocalThumbnailService {
+
+    private static final Pattern WIDTH_PATTERN = Pattern.compile("w_(\\d+)");
+    private static final Pattern QUALITY_PATTERN = Pattern.compile("q_(\\d+)");
+    private static final int DEFAULT_QUALITY = 80;
+
+    private final LocalObjectStorage localStorage;
+    private final int[] allowedWidths;
+
+    /** 正在生成的衍生图，避免并发请求重复生成 */
+    private final Map<Path, Object> generating = new ConcurrentHashMap<>();
+
+    public LocalThumbnailService(LocalObjectStorage localStorage,
+                                 @Value("${media.thumbnail.widths:240,480,960,1600}") int[] allowedWidths) {
+        this.localStorage = localStorage;
+        this.allowedWidths = Arrays.stream(allowedWidths).filter(w -> w > 0).sorted().toArray();
+    }
+
+    /**
+     * 衍生图在存储中的 key，如 derivatives/w480/images/2026/01/21/xxx.jpg
+     */
+    public static String variantKey(String variant, String key) {
+        return MediaDerivativeService.DERIVATIVE_DIR + "/" + variant + "/" + key;
+    }
+
+    /**
+     * 按 x-oss-process 参数获取缩略图文件；参数无法识别或原图不是可缩放图片时返回 null，生成失败时抛出异常
+     */
+    public Path resolve(String key, String process) throws IOException {
+        if (key == null || process == null || !process.startsWith("image/resize")) {
+            return null;
+        }
+        Matcher widthMatcher = WIDTH_PATTERN.matcher(process);
+        if (!widthMatcher.find()) {
+            return null;
+        }
+        int width = normalizeWidth(parseInt(widthMatcher.group(1), 0));
+        Matcher qualityMatcher = QUALITY_PATTERN.matcher(process);
+        int quality = qualityMatcher.find() ? parseInt(qualityMatcher.group(1), DEFAULT_QUALITY) : DEFAULT_QUALITY;
+        quality = Math.max(30, Math.min(95, quality));
+        return getThumbnail(key, width, quality);
+    }
+
+    /**
+     * 获取（必要时生成）指定宽度的缩略图；原图不超过该宽度时返回原图
+     */
+    public Path getThumbnail(String key, int width, int quality) throws IOException {
+        if (key.startsWith(MediaDerivativeService.DERIVATIVE_DIR + "/")) {
+            return null;
+        }
+        Path source = localStorage.resolvePath(key);
+        if (source == null || !Files.isRegularFile(source) || !isResizable(key)) {
+            return null;
+        }
+        Path target = localStorage.resolvePath(variantKey(variantName(width, quality), key));
+        if (target == null) {
+            return null;
+        }
+        if (Files.isRegularFile(target)) {
+            return target;
+        }
+        Object lock = generating.computeIfAbsent(target, k -> new Object());
+        try {
+            synchronized (lock) {
+                if (Files.isRegularFile(target)) {
+                    return target;
+                }
+                BufferedImage image;
+                try (InputStream in = Files.newInputStream(source)) {
+                    image = ImageIO.read(in);
+                }
+                if (image == null) {
+                    return null;
+                }
+                return render(key, image, width, quality) ? target : source;
+            }
+        } finally {
+            generating.remove(target);
+        }
+    }
+
+    /**
+     * 由已解码的原图写入缩略图缓存，原图不超过该宽度时不写入并返回 false
+     */
+    public boolean render(String key, BufferedImage image, int width, int quality) throws IOException {
+        boolean png = key.toLowerCase().endsWith(".png");
+        BufferedImage scaled = ImageUtil.scaleToWidth(image, width, png);
+        if (scaled == null) {
+            return false;
+        }
+        Path target = localStorage.resolvePath(variantKey(variantName(width, quality), key));
+        if (target == null) {
+            return false;
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".thumb-", ".tmp");
+        try {
+            Files.write(temp, ImageUtil.encode(scaled, png, quality / 100f));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+
+    /**
+     * 删除原图对应的全部衍生图
+     */
+    public void deleteVariants(String key) {
+        Path root = localStorage.resolvePath(MediaDerivativeService.DERIVATIVE_DIR);
+        if (key == null || root == null || !Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> variants = Files.list(root)) {
+            variants.forEach(dir -> {
+                Path target = localStorage.resolvePath(variantKey(dir.getFileName().toString(), key));
+                try {
+                    if (target != null) {
+                        Files.deleteIfExists(target);
+                    }
+                } catch (IOException e) {
+                    log.warn("删除衍生图失败, path={}", target, e);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("列出衍生图目录失败, key={}", key, e);
+        }
+    }
+
+    private String variantName(int width, int quality) {
+        return quality == DEFAULT_QUALITY ? "w" + width : "w" + width + "q" + quality;
+    }
+
+    /**
+     * 宽度取不小于请求值的最小允许宽度，避免任意尺寸占满磁盘
+     */
+    private int normalizeWidth(int width) {
+        for (int allowed : allowedWidths) {
+            if (allowed >= width) {
+                return allowed;
+            }
+        }
+        return allowedWidths[allowedWidths.length - 1];
+    }
+
+    private boolean isResizable(String key) {
+        String lower = key.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png");
+    }
+
+    private int parseInt(String value, int defaultValue) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
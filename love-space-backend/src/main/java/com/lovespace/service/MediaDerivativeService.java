@@ -0,0 +1,299 @@
+package com.lovespace.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.lovespace.config.NodeIdentity;
+import com.lovespace.entity.MediaDerivativeTask;
+import com.lovespace.entity.Moment;
+import com.lovespace.entity.MomentMedia;
+import com.lovespace.mapper.MediaDerivativeTaskMapper;
+import com.lovespace.mapper.MomentMapper;
+import com.lovespace.mapper.MomentMediaMapper;
+import com.lovespace.storage.ObjectStorage;
+import com.lovespace.util.ImageUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 图片衍生图后台生成：上传时只保存原图，缩略图（宽 480）与展示图（最长边 1600）由有界线程池异步生成。
+ * 任务记录在 media_derivative_task 表中，认领时记下节点标识；重启后本节点未完成的任务、
+ * 以及认领超时（认领节点已退出）的任务会被重新执行，不会抢走其他节点正在执行的任务。
+ * 缩略图写入 LocalThumbnailService 的缓存位置，缩略图 URL 访问时直接命中；OSS 自带图片处理，不需要本任务。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MediaDerivativeService {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_DONE = "DONE";
+    public static final String STATUS_FAILED = "FAILED";
+
+    /** 衍生图存放目录，与原图 key 拼接，如 derivatives/w480/images/2026/01/21/xxx.jpg */
+    public static final String DERIVATIVE_DIR = "derivatives";
+
+    private static final int THUMBNAIL_QUALITY = 80;
+
+    @Value("${media.derivative.workers:2}")
+    private int workers;
+
+    @Value("${media.derivative.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${media.derivative.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${media.derivative.thumbnail-width:480}")
+    private int thumbnailWidth;
+
+    @Value("${media.derivative.display-max-side:1600}")
+    private int displayMaxSide;
+
+    @Value("${media.derivative.claim-timeout-minutes:10}")
+    private long claimTimeoutMinutes;
+
+    private final MediaDerivativeTaskMapper taskMapper;
+    private final MomentMediaMapper mediaMapper;
+    private final MomentMapper momentMapper;
+    private final ObjectStorage mediaStorage;
+    private final LocalThumbnailService thumbnailService;
+    private final FileService fileService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final NodeIdentity nodeIdentity;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, "media-derivative-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // 本节点上次退出时正在执行的任务重新排队
+        taskMapper.update(null, new LambdaUpdateWrapper<MediaDerivativeTask>()
+                .eq(MediaDerivativeTask::getStatus, STATUS_RUNNING)
+                .eq(MediaDerivativeTask::getClaimedBy, nodeIdentity.getId())
+                .set(MediaDerivativeTask::getStatus, STATUS_PENDING));
+        requeueExpiredClaims();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 为新发布的图片登记衍生图任务，事务提交后立即开始处理
+     */
+    public void enqueue(List<MomentMedia> mediaList) {
+        if (mediaList == null || mediaList.isEmpty() || mediaStorage.supportsImageProcessing()) {
+            return;
+        }
+        List<MediaDerivativeTask> tasks = new ArrayList<>();
+        for (MomentMedia media : mediaList) {
+            if (!"image".equals(media.getType()) || media.getId() == null) {
+                continue;
+            }
+            if (!isResizable(media.getUrl()) || mediaStorage.resolveKey(media.getUrl()) == null) {
+                continue;
+            }
+            MediaDerivativeTask task = new MediaDerivativeTask();
+            task.setMediaId(media.getId());
+            task.setSourceUrl(media.getUrl());
+            task.setStatus(STATUS_PENDING);
+            task.setAttempts(0);
+            taskMapper.insert(task);
+            tasks.add(task);
+        }
+        if (tasks.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    tasks.forEach(MediaDerivativeService.this::trySubmit);
+                }
+            });
+        } else {
+            tasks.forEach(this::trySubmit);
+        }
+    }
+
+    /**
+     * 兜底轮询：处理启动前遗留或因队列已满未能提交的任务
+     */
+    @Scheduled(initialDelayString = "${media.derivative.poll-interval-ms:5000}",
+            fixedDelayString = "${media.derivative.poll-interval-ms:5000}")
+    public void pollPending() {
+        requeueExpiredClaims();
+        int capacity = executor.getQueue().remainingCapacity();
+        if (capacity <= 0) {
+            return;
+        }
+        List<MediaDerivativeTask> pending = taskMapper.selectList(new LambdaQueryWrapper<MediaDerivativeTask>()
+                .eq(MediaDerivativeTask::getStatus, STATUS_PENDING)
+                .orderByAsc(MediaDerivativeTask::getId)
+                .last("LIMIT " + capacity));
+        for (MediaDerivativeTask task : pending) {
+            trySubmit(task);
+        }
+    }
+
+    /**
+     * 认领超时的任务（认领节点已退出或没有认领信息）重新排队
+     */
+    private void requeueExpiredClaims() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(claimTimeoutMinutes);
+        taskMapper.update(null, new LambdaUpdateWrapper<MediaDerivativeTask>()
+                .eq(MediaDerivativeTask::getStatus, STATUS_RUNNING)
+                .and(w -> w.isNull(MediaDerivativeTask::getClaimedAt)
+                        .or().lt(MediaDerivativeTask::getClaimedAt, cutoff))
+                .set(MediaDerivativeTask::getStatus, STATUS_PENDING));
+    }
+
+    private void trySubmit(MediaDerivativeTask task) {
+        // 通过状态条件更新认领任务，避免重复执行
+        int claimed = taskMapper.update(null, new LambdaUpdateWrapper<MediaDerivativeTask>()
+                .eq(MediaDerivativeTask::getId, task.getId())
+                .eq(MediaDerivativeTask::getStatus, STATUS_PENDING)
+                .set(MediaDerivativeTask::getStatus, STATUS_RUNNING)
+                .set(MediaDerivativeTask::getClaimedBy, nodeIdentity.getId())
+                .set(MediaDerivativeTask::getClaimedAt, LocalDateTime.now()));
+        if (claimed == 0) {
+            return;
+        }
+        try {
+            executor.execute(() -> process(task));
+        } catch (RejectedExecutionException e) {
+            updateStatus(task.getId(), STATUS_PENDING, task.getAttempts(), null);
+        }
+    }
+
+    private void process(MediaDerivativeTask task) {
+        int attempts = (task.getAttempts() == null ? 0 : task.getAttempts()) + 1;
+        MomentMedia media = null;
+        try {
+            media = mediaMapper.selectById(task.getMediaId());
+            if (media == null || !task.getSourceUrl().equals(media.getUrl())) {
+                updateStatus(task.getId(), STATUS_DONE, attempts, null);
+                return;
+            }
+            String key = mediaStorage.resolveKey(task.getSourceUrl());
+            BufferedImage source;
+            try (InputStream in = mediaStorage.open(key)) {
+                source = ImageIO.read(in);
+            }
+            if (source == null) {
+                updateStatus(task.getId(), STATUS_FAILED, attempts, "无法解码图片");
+                publishIfMomentSettled(media);
+                return;
+            }
+
+            boolean png = key.toLowerCase().endsWith(".png");
+            thumbnailService.render(key, source, thumbnailWidth, THUMBNAIL_QUALITY);
+            String displayUrl = storeDerivative("l" + displayMaxSide, key,
+                    ImageUtil.scaleToMaxSide(source, displayMaxSide, png), png, 0.85f);
+
+            mediaMapper.update(null, new LambdaUpdateWrapper<MomentMedia>()
+                    .eq(MomentMedia::getId, media.getId())
+                    .set(media.getThumbnail() == null, MomentMedia::getThumbnail, fileService.buildThumbnailUrl(media.getUrl()))
+                    .set(MomentMedia::getDisplayUrl, displayUrl == null ? media.getUrl() : displayUrl));
+            updateStatus(task.getId(), STATUS_DONE, attempts, null);
+            publishIfMomentSettled(media);
+        } catch (Exception e) {
+            log.warn("生成衍生图失败, taskId={}, attempts={}", task.getId(), attempts, e);
+            String status = attempts >= maxAttempts ? STATUS_FAILED : STATUS_PENDING;
+            updateStatus(task.getId(), status, attempts, abbreviate(e.getMessage()));
+            if (STATUS_FAILED.equals(status) && media != null) {
+                publishIfMomentSettled(media);
+            }
+        }
+    }
+
+    /**
+     * 同一条动态的衍生图全部处理完（成功或最终失败）后，才让该动态所在空间的首页快照失效，多图动态只失效一次
+     */
+    private void publishIfMomentSettled(MomentMedia media) {
+        if (media.getMomentId() == null) {
+            return;
+        }
+        Long remaining = taskMapper.selectCount(new LambdaQueryWrapper<MediaDerivativeTask>()
+                .in(MediaDerivativeTask::getStatus, STATUS_PENDING, STATUS_RUNNING)
+                .inSql(MediaDerivativeTask::getMediaId,
+                        "SELECT id FROM moment_media WHERE moment_id = " + media.getMomentId()));
+        if (remaining != null && remaining > 0) {
+            return;
+        }
+        Moment moment = momentMapper.selectById(media.getMomentId());
+        if (moment != null && moment.getSpaceId() != null) {
+            eventPublisher.publishEvent(DashboardChangedEvent.moments(moment.getSpaceId()));
+        }
+    }
+
+    /**
+     * 写入衍生图并返回 URL，无需缩放时返回 null
+     */
+    private String storeDerivative(String variant, String sourceKey, BufferedImage image, boolean png, float quality)
+            throws Exception {
+        if (image == null) {
+            return null;
+        }
+        byte[] bytes = ImageUtil.encode(image, png, quality);
+        String key = LocalThumbnailService.variantKey(variant, sourceKey);
+        return mediaStorage.put(key, new ByteArrayInputStream(bytes), bytes.length, png ? "image/png" : "image/jpeg");
+    }
+
+    private void updateStatus(Long taskId, String status, Integer attempts, String lastError) {
+        MediaDerivativeTask update = new MediaDerivativeTask();
+        update.setId(taskId);
+        update.setStatus(status);
+        update.setAttempts(attempts);
+        update.setLastError(lastError);
+        taskMapper.updateById(update);
+    }
+
+    private boolean isResizable(String url) {
+        if (url == null) {
+            return false;
+        }
+        String lower = url.toLowerCase();
+        int queryIndex = lower.indexOf('?');
+        if (queryIndex >= 0) {
+            lower = lower.substring(0, queryIndex);
+        }
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png");
+    }
+
+    private String abbreviate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 250 ? message.substring(0, 250) : message;
+    }
+}
@@ -0,0 +1,291 @@
+package com.lovespace.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.lovespace.entity.MediaObject;
+import com.lovespace.mapper.MediaObjectMapper;
+import com.lovespace.storage.ObjectStorage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 按内容去重的媒体对象：上传时计算内容 SHA-256，内容相同则复用已有对象。
+ * moment_media、chat_message.media_url、user.avatar 通过 retain/release 维护引用计数，
+ * 引用归零且超过宽限期（给刚上传、尚未挂到业务数据上的对象留时间）后才真正删除文件。
+ * 未登记的历史 URL 不参与计数，仍由调用方按原方式删除。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MediaObjectService {
+
+    @Value("${media.object.orphan-grace-minutes:60}")
+    private long orphanGraceMinutes;
+
+    @Value("${media.object.sweep-batch-size:100}")
+    private int sweepBatchSize;
+
+    private final MediaObjectMapper mediaObjectMapper;
+    private final ObjectStorage mediaStorage;
+    private final LocalThumbnailService thumbnailService;
+
+    /**
+     * 保存上传文件并返回 URL，内容已存在时直接返回已有对象的 URL。
+     * 分两遍读取：上传文件已由容器落盘，第一遍只算哈希，命中时不再写入存储；
+     * 未命中时再次打开上传文件写入存储。边写边算哈希的单遍写入见 {@link #storeStream}
+     */
+    public String store(MultipartFile file, String subDir) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+
+        MediaObject existing = reuse(hash);
+        if (existing != null) {
+            return existing.getUrl();
+        }
+
+        String key = newKey(subDir, file.getOriginalFilename());
+        String url;
+        try (InputStream in = file.getInputStream()) {
+            url = mediaStorage.put(key, in, file.getSize(), file.getContentType());
+        }
+        return register(hash, key, url, file.getSize(), file.getContentType());
+    }
+
+    /**
+     * 边写入存储边计算哈希，只写一次；写完发现内容已存在时删除新写入的对象并返回已有 URL
+     */
+    public String storeStream(InputStream in, long size, String contentType, String filename, String subDir)
+            throws IOException {
+        String key = newKey(subDir, filename);
+        MessageDigest digest = sha256();
+        CountingInputStream counting = new CountingInputStream(new DigestInputStream(in, digest));
+        String url = mediaStorage.put(key, counting, size, contentType);
+        String hash = HexFormat.of().formatHex(digest.digest());
+
+        MediaObject existing = reuse(hash);
+        if (existing != null) {
+            deleteQuietly(key);
+            return existing.getUrl();
+        }
+        return register(hash, key, url, counting.getCount(), contentType);
+    }
+
+    /**
+     * 增加引用，URL 未登记时返回 false
+     */
+    public boolean retain(String url) {
+        String key = resolveKey(url);
+        if (key == null) {
+            return false;
+        }
+        return mediaObjectMapper.update(null, new LambdaUpdateWrapper<MediaObject>()
+                .eq(MediaObject::getObjectKey, key)
+                .setSql("ref_count = ref_count + 1")) > 0;
+    }
+
+    /**
+     * 减少引用，归零时在事务提交后尝试删除文件；URL 未登记时返回 false
+     */
+    public boolean release(String url) {
+        String key = resolveKey(url);
+        if (key == null) {
+            return false;
+        }
+        int updated = mediaObjectMapper.update(null, new LambdaUpdateWrapper<MediaObject>()
+                .eq(MediaObject::getObjectKey, key)
+                .gt(MediaObject::getRefCount, 0)
+                .setSql("ref_count = ref_count - 1"));
+        if (updated == 0 && !isTracked(url)) {
+            return false;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    purgeIfUnreferenced(key);
+                }
+            });
+        } else {
+            purgeIfUnreferenced(key);
+        }
+        return true;
+    }
+
+    /**
+     * URL 是否由本服务登记
+     */
+    public boolean isTracked(String url) {
+        String key = resolveKey(url);
+        return key != null && mediaObjectMapper.selectCount(new LambdaQueryWrapper<MediaObject>()
+                .eq(MediaObject::getObjectKey, key)) > 0;
+    }
+
+    /**
+     * 定期清理上传后从未被引用、或引用已归零的对象
+     */
+    @Scheduled(initialDelayString = "${media.object.sweep-interval-ms:600000}",
+            fixedDelayString = "${media.object.sweep-interval-ms:600000}")
+    public void sweepUnreferenced() {
+        List<MediaObject> candidates = mediaObjectMapper.selectList(new LambdaQueryWrapper<MediaObject>()
+                .select(MediaObject::getId, MediaObject::getObjectKey)
+                .eq(MediaObject::getRefCount, 0)
+                .lt(MediaObject::getLastUsedAt, graceCutoff())
+                .orderByAsc(MediaObject::getId)
+                .last("LIMIT " + sweepBatchSize));
+        for (MediaObject object : candidates) {
+            purgeIfUnreferenced(object.getObjectKey());
+        }
+    }
+
+    /**
+     * 先按条件删除记录，删除成功的一方负责删除文件；与上传命中的 touch 互斥
+     */
+    private void purgeIfUnreferenced(String key) {
+        int deleted = mediaObjectMapper.delete(new LambdaQueryWrapper<MediaObject>()
+                .eq(MediaObject::getObjectKey, key)
+                .eq(MediaObject::getRefCount, 0)
+                .lt(MediaObject::getLastUsedAt, graceCutoff()));
+        if (deleted == 0) {
+            return;
+        }
+        deleteQuietly(key);
+        if (!mediaStorage.supportsImageProcessing()) {
+            thumbnailService.deleteVariants(key);
+        }
+    }
+
+    /**
+     * 登记新对象；相同内容被并发上传时保留先登记的对象
+     */
+    private String register(String hash, String key, String url, long size, String contentType) throws IOException {
+        MediaObject object = new MediaObject();
+        object.setContentHash(hash);
+        object.setObjectKey(key);
+        object.setUrl(url);
+        object.setSize(size);
+        object.setContentType(contentType);
+        object.setRefCount(0);
+        object.setLastUsedAt(LocalDateTime.now());
+        try {
+            mediaObjectMapper.insert(object);
+            return url;
+        } catch (DuplicateKeyException e) {
+            deleteQuietly(key);
+            MediaObject winner = reuse(hash);
+            if (winner == null) {
+                throw new IOException("登记媒体对象失败", e);
+            }
+            return winner.getUrl();
+        }
+    }
+
+    /**
+     * 命中已有内容时刷新使用时间；对象恰好被清理时返回 null，由调用方重新上传
+     */
+    private MediaObject reuse(String hash) {
+        MediaObject existing = mediaObjectMapper.selectOne(new LambdaQueryWrapper<MediaObject>()
+                .eq(MediaObject::getContentHash, hash));
+        if (existing == null) {
+            return null;
+        }
+        int touched = mediaObjectMapper.update(null, new LambdaUpdateWrapper<MediaObject>()
+                .eq(MediaObject::getId, existing.getId())
+                .set(MediaObject::getLastUsedAt, LocalDateTime.now()));
+        return touched > 0 ? existing : null;
+    }
+
+    private LocalDateTime graceCutoff() {
+        return LocalDateTime.now().minusMinutes(orphanGraceMinutes);
+    }
+
+    private String resolveKey(String url) {
+        return url == null || url.isBlank() ? null : mediaStorage.resolveKey(url);
+    }
+
+    private void deleteQuietly(String key) {
+        try {
+            mediaStorage.delete(key);
+        } catch (Exception e) {
+            log.warn("删除媒体文件失败, key={}", key, e);
+        }
+    }
+
+    private String newKey(String subDir, String filename) {
+        String dateDir = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
+        return subDir + "/" + dateDir + "/" + UUID.randomUUID().toString().replace("-", "") + extensionOf(filename);
+    }
+
+    private String extensionOf(String filename) {
+        if (filename == null || !filename.contains(".")) {
+            return "";
+        }
+        String extension = filename.substring(filename.lastIndexOf("."));
+        return extension.matches("\\.[A-Za-z0-9]{1,10}") ? extension : "";
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 统计实际读取的字节数（请求未声明长度时用于登记大小）
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.lovespace.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.lovespace.dto.UserProfile;
+import com.lovespace.entity.Comment;
+import com.lovespace.entity.Moment;
+import com.lovespace.entity.MomentLike;
+import com.lovespace.entity.MomentMedia;
+import com.lovespace.mapper.CommentMapper;
+import com.lovespace.mapper.MomentLikeMapper;
+import com.lovespace.mapper.MomentMediaMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 动态列表批量填充：一页动态的用户、媒体、评论、点赞各用一次 IN 查询加载，再在内存中拼装，
+ * 查询次数不随动态数或评论数增长。
+ */
+@Component
+@RequiredArgsConstructor
+public class MomentFeedHydrator {
+
+    private final MomentMediaMapper mediaMapper;
+    private final CommentMapper commentMapper;
+    private final MomentLikeMapper likeMapper;
+    private final UserProfileCache userProfileCache;
+
+    public void hydrate(Moment moment, Long currentUserId) {
+        if (moment != null) {
+            hydrate(List.of(moment), currentUserId);
+        }
+    }
+
+    public void hydrate(List<Moment> moments, Long currentUserId) {
+        if (moments == null || moments.isEmpty()) {
+            return;
+        }
+        List<Long> momentIds = moments.stream()
+                .map(Moment::getId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (momentIds.isEmpty()) {
+            return;
+        }
+
+        // 媒体文件
+        Map<Long, List<MomentMedia>> mediaByMoment = new HashMap<>();
+        for (MomentMedia media : mediaMapper.selectList(new LambdaQueryWrapper<MomentMedia>()
+                .in(MomentMedia::getMomentId, momentIds)
+                .orderByAsc(MomentMedia::getMomentId)
+                .orderByAsc(MomentMedia::getSort))) {
+            mediaByMoment.computeIfAbsent(media.getMomentId(), k -> new ArrayList<>()).add(media);
+        }
+
+        // 评论
+        Map<Long, List<Comment>> commentsByMoment = new HashMap<>();
+        for (Comment comment : commentMapper.selectList(new LambdaQueryWrapper<Comment>()
+                .in(Comment::getMomentId, momentIds)
+                .orderByAsc(Comment::getCreatedAt)
+                .orderByAsc(Comment::getId))) {
+            commentsByMoment.computeIfAbsent(comment.getMomentId(), k -> new ArrayList<>()).add(comment);
+        }
+
+        // 用户信息（动态作者、评论者、被回复者合并后走资料缓存）
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (Moment moment : moments) {
+            if (moment.getUserId() != null) {
+                userIds.add(moment.getUserId());
+            }
+        }
+        for (List<Comment> comments : commentsByMoment.values()) {
+            for (Comment comment : comments) {
+                if (comment.getUserId() != null) {
+                    userIds.add(comment.getUserId());
+                }
+                if (comment.getReplyToUserId() != null) {
+                    userIds.add(comment.getReplyToUserId());
+                }
+            }
+        }
+        Map<Long, UserProfile> users = userProfileCache.getAll(userIds);
+
+        // 是否已点赞
+        Set<Long> likedMomentIds = new HashSet<>();
+        if (currentUserId != null) {
+            for (MomentLike like : likeMapper.selectList(new LambdaQueryWrapper<MomentLike>()
+                    .select(MomentLike::getMomentId)
+                    .in(MomentLike::getMomentId, momentIds)
+                    .eq(MomentLike::getUserId, currentUserId))) {
+                likedMomentIds.add(like.getMomentId());
+            }
+        }
+
+        for (Moment moment : moments) {
+            moment.setUser(users.get(moment.getUserId()));
+            moment.setMediaList(mediaByMoment.getOrDefault(moment.getId(), new ArrayList<>()));
+            List<Comment> comments = commentsByMoment.getOrDefault(moment.getId(), new ArrayList<>());
+            for (Comment comment : comments) {
+                comment.setUser(users.get(comment.getUserId()));
+                if (comment.getReplyToUserId() != null) {
+                    comment.setReplyToUser(users.get(comment.getReplyToUserId()));
+                }
+            }
+            moment.setComments(comments);
+            if (currentUserId != null) {
+                moment.setLiked(likedMomentIds.contains(moment.getId()));
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.lovespace.entity.*;
 import com.lovespace.mapper.*;
 import com.lovespace.security.RoleService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,11 +22,14 @@ public class MomentService extends ServiceImpl<MomentMapper, Moment> {
     private final MomentMediaMapper mediaMapper;
     private final CommentMapper commentMapper;
     private final MomentLikeMapper likeMapper;
-    private final UserMapper userMapper;
+    private final UserProfileCache userProfileCache;
     private final FileService fileService;
     private final SpaceService spaceService;
     private final HostSpaceService hostSpaceService;
     private final RoleService roleService;
+    private final MomentFeedHydrator feedHydrator;
+    private final MediaDerivativeService mediaDerivativeService;
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final String VISIBILITY_SPACE = "SPACE";
     private static final String VISIBILITY_PUBLIC = "PUBLIC";
@@ -54,8 +58,11 @@ public class MomentService extends ServiceImpl<MomentMapper, Moment> {
                 media.setMomentId(moment.getId());
                 media.setSort(i);
                 mediaMapper.insert(media);
+                fileService.retainFile(media.getUrl());
             }
+            mediaDerivativeService.enqueue(mediaList);
         }
+        eventPublisher.publishEvent(DashboardChangedEvent.moments(spaceId));
         
         return Result.success("发布成功", moment);
     }
@@ -73,9 +80,7 @@ public class MomentService extends ServiceImpl<MomentMapper, Moment> {
                 .orderByDesc(Moment::getCreatedAt));
         
         // 填充关联数据
-        for (Moment moment : momentPage.getRecords()) {
-            fillMomentData(moment, currentUserId);
-        }
+        feedHydrator.hydrate(momentPage.getRecords(), currentUserId);
         
         return Result.success(momentPage);
     }
@@ -88,9 +93,7 @@ public class MomentService extends ServiceImpl<MomentMapper, Moment> {
                 .eq(hostSpaceId != null, Moment::getSpaceId, hostSpaceId)
                 .orderByDesc(Moment::getCreatedAt));
 
-        for (Moment moment : momentPage.getRecords()) {
-            fillMomentData(moment, currentUserId);
-        }
+        feedHydrator.hydrate(momentPage.getRecords(), currentUserId);
         return Result.success(momentPage);
     }
 
@@ -101,9 +104,7 @@ public class MomentService extends ServiceImpl<MomentMapper, Moment> {
                 .in(Moment::getVisibility, VISIBILITY_PUBLIC, VISIBILITY_GUEST)
                 .orderByDesc(Moment::getCreatedAt));
 
-        for (Moment moment : momentPage.getRecords()) {
-            fillMomentData(moment, viewerUserId);
-        }
+        feedHydrator.hydrate(momentPage.getRecords(), viewerUserId);
         return Result.success(momentPage);
     }
 
@@ -124,8 +125,11 @@ public class MomentService extends ServiceImpl<MomentMapper, Moment> {
                 media.setMomentId(moment.getId());
                 media.setSort(i);
                 mediaMapper.insert(media);
+                fileService.retainFile(media.getUrl());
             }
+            mediaDerivativeService.enqueue(mediaList);
         }
+        eventPublisher.publishEvent(DashboardChangedEvent.moments(hostSpaceId));
         return Result.success("发布成功", moment);
     }
     
@@ -141,7 +145,7 @@ public class MomentService extends ServiceImpl<MomentMapper, Moment> {
         if (!canAccessMoment(moment, spaceId)) {
             return Result.error(403, "无权限访问");
         }
-        fillMomentData(moment, currentUserId);
+        feedHydrator.hydrate(moment, currentUserId);
         return Result.success(moment);
     }
     
@@ -165,18 +169,14 @@ public class MomentService extends ServiceImpl<MomentMapper, Moment> {
         List<MomentMedia> mediaList = mediaMapper.selectList(new LambdaQueryWrapper<MomentMedia>()
                 .eq(MomentMedia::getMomentId, momentId));
         for (MomentMedia media : mediaList) {
-            if (media.getUrl() != null && !media.getUrl().isBlank()) {
-                fileService.deleteFile(media.getUrl());
-            }
-            if (media.getThumbnail() != null && !media.getThumbnail().isBlank()) {
-                fileService.deleteFile(media.getThumbnail());
-            }
+            fileService.releaseFile(media.getUrl(), media.getThumbnail(), media.getDisplayUrl());
         }
 
         mediaMapper.delete(new LambdaQueryWrapper<MomentMedia>().eq(MomentMedia::getMomentId, momentId));
         likeMapper.delete(new LambdaQueryWrapper<MomentLike>().eq(MomentLike::getMomentId, momentId));
         commentMapper.delete(new LambdaQueryWrapper<Comment>().eq(Comment::getMomentId, momentId));
         this.removeById(momentId);
+        eventPublisher.publishEvent(DashboardChangedEvent.moments(moment.getSpaceId()));
         return Result.success("删除成功", null);
     }
 
@@ -199,18 +199,14 @@ public class MomentService extends ServiceImpl<MomentMapper, Moment> {
         List<MomentMedia> mediaList = mediaMapper.selectList(new LambdaQueryWrapper<MomentMedia>()
                 .eq(MomentMedia::getMomentId, momentId));
         for (MomentMedia media : mediaList) {
-            if (media.getUrl() != null && !media.getUrl().isBlank()) {
-                fileService.deleteFile(media.getUrl());
-            }
-            if (media.getThumbnail() != null && !media.getThumbnail().isBlank()) {
-                fileService.deleteFile(media.getThumbnail());
-            }
+            fileService.releaseFile(media.getUrl(), media.getThumbnail(), media.getDisplayUrl());
         }
 
         mediaMapper.delete(new LambdaQueryWrapper<MomentMedia>().eq(MomentMedia::getMomentId, momentId));
         likeMapper.delete(new LambdaQueryWrapper<MomentLike>().eq(MomentLike::getMomentId, momentId));
         commentMapper.delete(new LambdaQueryWrapper<Comment>().eq(Comment::getMomentId, momentId));
         this.removeById(momentId);
+        eventPublisher.publishEvent(DashboardChangedEvent.moments(moment.getSpaceId()));
         return Result.success("删除成功", null);
     }
     
@@ -249,6 +245,7 @@ public class MomentService extends ServiceImpl<MomentMapper, Moment> {
             liked = true;
         }
         this.updateById(moment);
+        eventPublisher.publishEvent(DashboardChangedEvent.moments(moment.getSpaceId()));
         
         return Result.success(liked ? "点赞成功" : "取消点赞", liked);
     }
@@ -299,18 +296,12 @@ public class MomentService extends ServiceImpl<MomentMapper, Moment> {
             comment.setReplyToUserId(parent.getUserId());
         }
         commentMapper.insert(comment);
+        eventPublisher.publishEvent(DashboardChangedEvent.moments(moment.getSpaceId()));
         
         // 填充用户信息
-        comment.setUser(userMapper.selectById(userId));
-        if (comment.getUser() != null) {
-            comment.getUser().setPassword(null);
-        }
+        comment.setUser(userProfileCache.get(userId));
         if (comment.getReplyToUserId() != null) {
-            User replyUser = userMapper.selectById(comment.getReplyToUserId());
-            if (replyUser != null) {
-                replyUser.setPassword(null);
-            }
-            comment.setReplyToUser(replyUser);
+            comment.setReplyToUser(userProfileCache.get(comment.getReplyToUserId()));
         }
         
         return Result.success("评论成功", comment);
@@ -340,22 +331,21 @@ public class MomentService extends ServiceImpl<MomentMapper, Moment> {
         }
         
         commentMapper.deleteById(commentId);
+        eventPublisher.publishEvent(DashboardChangedEvent.moments(moment.getSpaceId()));
         return Result.success("删除成功", null);
     }
     
     /**
-     * 获取最新动态（首页用）
+     * 获取最新动态（首页用），viewerUserId 为 null 时不查询点赞状态
      */
-    public List<Moment> getRecentMoments(Long currentUserId, int limit) {
-        Long spaceId = spaceService.getOrCreatePrimarySpaceId(currentUserId);
+    public List<Moment> getRecentMoments(Long memberUserId, Long viewerUserId, int limit) {
+        Long spaceId = spaceService.getOrCreatePrimarySpaceId(memberUserId);
         List<Moment> moments = this.list(new LambdaQueryWrapper<Moment>()
                 .eq(Moment::getSpaceId, spaceId)
                 .orderByDesc(Moment::getCreatedAt)
                 .last("LIMIT " + limit));
         
-        for (Moment moment : moments) {
-            fillMomentData(moment, currentUserId);
-        }
+        feedHydrator.hydrate(moments, viewerUserId);
         return moments;
     }
 
@@ -367,9 +357,7 @@ public class MomentService extends ServiceImpl<MomentMapper, Moment> {
                 .orderByDesc(Moment::getCreatedAt)
                 .last("LIMIT " + limit));
 
-        for (Moment moment : moments) {
-            fillMomentData(moment, viewerUserId);
-        }
+        feedHydrator.hydrate(moments, viewerUserId);
         return moments;
     }
 
@@ -403,61 +391,4 @@ public class MomentService extends ServiceImpl<MomentMapper, Moment> {
         }
         return currentSpaceId.equals(moment.getSpaceId());
     }
-    
-    /**
-     * 填充动态关联数据
-     */
-    private void fillMomentData(Moment moment, Long currentUserId) {
-        // 用户信息
-        User user = userMapper.selectById(moment.getUserId());
-        if (user != null) {
-            user.setPassword(null);
-        }
-        moment.setUser(user);
-        
-        // 媒体文件
-        List<MomentMedia> mediaList = mediaMapper.selectList(new LambdaQueryWrapper<MomentMedia>()
-                .eq(MomentMedia::getMomentId, moment.getId())
-                .orderByAsc(MomentMedia::getSort));
-        moment.setMediaList(mediaList);
-        
-        // 评论
-        List<Comment> comments = commentMapper.selectList(new LambdaQueryWrapper<Comment>()
-                .eq(Comment::getMomentId, moment.getId())
-                .orderByAsc(Comment::getCreatedAt));
-        java.util.Set<Long> replyUserIds = new java.util.HashSet<>();
-        for (Comment comment : comments) {
-            User commentUser = userMapper.selectById(comment.getUserId());
-            if (commentUser != null) {
-                commentUser.setPassword(null);
-            }
-            comment.setUser(commentUser);
-            if (comment.getReplyToUserId() != null) {
-                replyUserIds.add(comment.getReplyToUserId());
-            }
-        }
-        if (!replyUserIds.isEmpty()) {
-            java.util.Map<Long, User> replyUsers = new java.util.HashMap<>();
-            for (User u : userMapper.selectBatchIds(replyUserIds)) {
-                if (u != null) {
-                    u.setPassword(null);
-                    replyUsers.put(u.getId(), u);
-                }
-            }
-            for (Comment comment : comments) {
-                if (comment.getReplyToUserId() != null) {
-                    comment.setReplyToUser(replyUsers.get(comment.getReplyToUserId()));
-                }
-            }
-        }
-        moment.setComments(comments);
-        
-        // 是否已点赞
-        if (currentUserId != null) {
-            MomentLike like = likeMapper.selectOne(new LambdaQueryWrapper<MomentLike>()
-                    .eq(MomentLike::getMomentId, moment.getId())
-                    .eq(MomentLike::getUserId, currentUserId));
-            moment.setLiked(like != null);
-        }
-    }
 }
@@ -1,27 +1,36 @@
 package com.lovespace.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.lovespace.cluster.ClusterEventBus;
 import com.lovespace.dto.SpaceDetail;
+import com.lovespace.dto.UserProfile;
 import com.lovespace.entity.Space;
 import com.lovespace.entity.SpaceMember;
 import com.lovespace.entity.User;
 import com.lovespace.mapper.SpaceMapper;
 import com.lovespace.mapper.SpaceMemberMapper;
 import com.lovespace.mapper.UserMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+/**
+ * 空间与成员：用户主空间和空间成员列表缓存在进程内，新增成员时通知其他节点让该空间的成员列表失效
+ */
 @Service
 @RequiredArgsConstructor
 public class SpaceService {
 
+    private static final String CLUSTER_TOPIC = "space-membership";
+
     @Value("${couple.space-name:我们的空间}")
     private String defaultSpaceName;
 
@@ -34,19 +43,85 @@ public class SpaceService {
     private final SpaceMapper spaceMapper;
     private final SpaceMemberMapper spaceMemberMapper;
     private final UserMapper userMapper;
+    private final UserProfileCache userProfileCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ClusterEventBus clusterEventBus;
+
+    /** 用户 -> 主空间 */
+    private final Map<Long, Long> primarySpaceByUser = new ConcurrentHashMap<>();
+
+    /** 空间 -> 成员用户ID */
+    private final Map<Long, List<Long>> memberIdsBySpace = new ConcurrentHashMap<>();
+
+    /**
+     * 查询或创建主空间的结果
+     *
+     * @param membersAdded 本次是否新增了成员
+     */
+    private record PrimarySpace(Long spaceId, boolean membersAdded) {
+    }
+
+    @PostConstruct
+    public void init() {
+        clusterEventBus.subscribe(CLUSTER_TOPIC, payload -> memberIdsBySpace.remove(Long.valueOf(payload)));
+    }
 
-    @Transactional
+    /**
+     * 获取用户主空间，命中缓存时不开启事务也不访问数据库；仅未命中时才查询或创建空间
+     */
     public Long getOrCreatePrimarySpaceId(Long userId) {
         if (userId == null) {
             return null;
         }
+        Long cached = primarySpaceByUser.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+        PrimarySpace primary = transactionTemplate.execute(status -> loadOrCreatePrimarySpaceId(userId));
+        if (primary == null || primary.spaceId() == null) {
+            return null;
+        }
+        Long spaceId = primary.spaceId();
+        // 未命中路径可能新增了成员，成员列表重新加载；事务已提交，其他节点收到后读到的是新成员列表
+        memberIdsBySpace.remove(spaceId);
+        primarySpaceByUser.put(userId, spaceId);
+        if (primary.membersAdded()) {
+            clusterEventBus.broadcast(CLUSTER_TOPIC, spaceId.toString());
+        }
+        return spaceId;
+    }
 
+    /**
+     * 获取空间成员用户ID（按加入顺序）
+     */
+    public List<Long> getMemberUserIds(Long spaceId) {
+        if (spaceId == null) {
+            return List.of();
+        }
+        List<Long> cached = memberIdsBySpace.get(spaceId);
+        if (cached != null) {
+            return cached;
+        }
+        List<Long> memberIds = spaceMemberMapper.selectList(new LambdaQueryWrapper<SpaceMember>()
+                        .select(SpaceMember::getUserId)
+                        .eq(SpaceMember::getSpaceId, spaceId)
+                        .orderByAsc(SpaceMember::getId))
+                .stream()
+                .map(SpaceMember::getUserId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        memberIdsBySpace.put(spaceId, memberIds);
+        return memberIds;
+    }
+
+    private PrimarySpace loadOrCreatePrimarySpaceId(Long userId) {
         SpaceMember existing = spaceMemberMapper.selectOne(new LambdaQueryWrapper<SpaceMember>()
                 .eq(SpaceMember::getUserId, userId)
                 .orderByAsc(SpaceMember::getId)
                 .last("LIMIT 1"));
         if (existing != null) {
-            return existing.getSpaceId();
+            return new PrimarySpace(existing.getSpaceId(), false);
         }
 
         User current = userMapper.selectById(userId);
@@ -62,8 +137,7 @@ public class SpaceService {
                 space.setName(defaultSpaceName);
                 spaceMapper.insert(space);
             }
-            ensureDefaultCoupleMembers(space.getId());
-            return space.getId();
+            return new PrimarySpace(space.getId(), ensureDefaultCoupleMembers(space.getId()));
         }
 
         Space space = new Space();
@@ -76,7 +150,7 @@ public class SpaceService {
         member.setUserId(userId);
         member.setRole("OWNER");
         spaceMemberMapper.insert(member);
-        return space.getId();
+        return new PrimarySpace(space.getId(), true);
     }
 
     public Long getPartnerUserIdInPrimarySpace(Long userId) {
@@ -84,14 +158,9 @@ public class SpaceService {
         if (spaceId == null) {
             return null;
         }
-        List<SpaceMember> members = spaceMemberMapper.selectList(new LambdaQueryWrapper<SpaceMember>()
-                .eq(SpaceMember::getSpaceId, spaceId));
-        if (members == null || members.isEmpty()) {
-            return null;
-        }
-        for (SpaceMember m : members) {
-            if (m.getUserId() != null && !m.getUserId().equals(userId)) {
-                return m.getUserId();
+        for (Long memberId : getMemberUserIds(spaceId)) {
+            if (!memberId.equals(userId)) {
+                return memberId;
             }
         }
         return null;
@@ -115,15 +184,7 @@ public class SpaceService {
                 .filter(Objects::nonNull)
                 .toList();
 
-        List<User> users = userIds.isEmpty() ? List.of() : userMapper.selectBatchIds(userIds);
-        for (User u : users) {
-            if (u != null) {
-                u.setPassword(null);
-            }
-        }
-
-        users = users.stream()
-                .filter(Objects::nonNull)
+        List<UserProfile> users = userProfileCache.getAll(userIds).values().stream()
                 .sorted((a, b) -> {
                     SpaceMember ma = memberByUserId.get(a.getId());
                     SpaceMember mb = memberByUserId.get(b.getId());
@@ -145,20 +206,23 @@ public class SpaceService {
         return detail;
     }
 
-    private void ensureDefaultCoupleMembers(Long spaceId) {
+    /**
+     * 返回是否新增了成员
+     */
+    private boolean ensureDefaultCoupleMembers(Long spaceId) {
         if (spaceId == null) {
-            return;
+            return false;
         }
-        ensureMember(spaceId, ownerUsername1, "OWNER");
-        ensureMember(spaceId, ownerUsername2, "MEMBER");
+        boolean added = ensureMember(spaceId, ownerUsername1, "OWNER");
+        return ensureMember(spaceId, ownerUsername2, "MEMBER") || added;
     }
 
-    private void ensureMember(Long spaceId, String username, String role) {
+    private boolean ensureMember(Long spaceId, String username, String role) {
         User user = userMapper.selectOne(new LambdaQueryWrapper<User>()
                 .eq(User::getUsername, username)
                 .last("LIMIT 1"));
         if (user == null) {
-            return;
+            return false;
         }
         SpaceMember exist = spaceMemberMapper.selectOne(new LambdaQueryWrapper<SpaceMember>()
                 .eq(SpaceMember::getSpaceId, spaceId)
@@ -169,12 +233,13 @@ public class SpaceService {
                 exist.setRole(role);
                 spaceMemberMapper.updateById(exist);
             }
-            return;
+            return false;
         }
         SpaceMember member = new SpaceMember();
         member.setSpaceId(spaceId);
         member.setUserId(user.getId());
         member.setRole(role);
         spaceMemberMapper.insert(member);
+        return true;
     }
 }
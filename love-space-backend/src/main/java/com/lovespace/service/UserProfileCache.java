@@ -0,0 +1,127 @@
+package com.lovespace.service;
+
+import com.lovespace.cluster.ClusterEventBus;
+import com.lovespace.dto.UserProfile;
+import com.lovespace.entity.User;
+import com.lovespace.mapper.UserMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 用户资料缓存：进程内、有容量上限与过期时间，资料或密码修改时失效，并通知其他节点一起失效
+ */
+@Component
+@RequiredArgsConstructor
+public class UserProfileCache {
+
+    @Value("${cache.user-profile.max-size:1024}")
+    private int maxSize;
+
+    @Value("${cache.user-profile.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private static final String CLUSTER_TOPIC = "user-profile";
+
+    private final UserMapper userMapper;
+    private final ClusterEventBus clusterEventBus;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        clusterEventBus.subscribe(CLUSTER_TOPIC, payload -> entries.remove(Long.valueOf(payload)));
+    }
+
+    public UserProfile get(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        return getAll(Set.of(userId)).get(userId);
+    }
+
+    /**
+     * 批量获取，未命中的部分合并为一次查询
+     */
+    public Map<Long, UserProfile> getAll(Collection<Long> userIds) {
+        Map<Long, UserProfile> result = new HashMap<>();
+        if (userIds == null || userIds.isEmpty()) {
+            return result;
+        }
+        long now = System.currentTimeMillis();
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long userId : userIds) {
+            if (userId == null || result.containsKey(userId)) {
+                continue;
+            }
+            Entry entry = entries.get(userId);
+            if (entry != null && entry.expiresAt > now) {
+                result.put(userId, entry.profile);
+            } else {
+                missing.add(userId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long expiresAt = now + ttlSeconds * 1000L;
+            for (User user : userMapper.selectBatchIds(missing)) {
+                if (user == null) {
+                    continue;
+                }
+                UserProfile profile = UserProfile.from(user);
+                entries.put(user.getId(), new Entry(profile, expiresAt));
+                result.put(user.getId(), profile);
+            }
+            evictIfNecessary(now);
+        }
+        return result;
+    }
+
+    /**
+     * 跳过缓存重新读取，用于结果会被长期保存的场景（如首页快照），避免沿用其他节点已修改的旧资料
+     */
+    public Map<Long, UserProfile> reload(Collection<Long> userIds) {
+        List<Long> ids = userIds.stream().filter(Objects::nonNull).toList();
+        ids.forEach(entries::remove);
+        return getAll(ids);
+    }
+
+    public void invalidate(Long userId) {
+        if (userId != null) {
+            entries.remove(userId);
+            clusterEventBus.broadcast(CLUSTER_TOPIC, userId.toString());
+        }
+    }
+
+    private void evictIfNecessary(long now) {
+        if (entries.size() <= maxSize) {
+            return;
+        }
+        entries.values().removeIf(e -> e.expiresAt <= now);
+        Iterator<Long> it = entries.keySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static final class Entry {
+        private final UserProfile profile;
+        private final long expiresAt;
+
+        private Entry(UserProfile profile, long expiresAt) {
+            this.profile = Objects.requireNonNull(profile);
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -12,6 +12,7 @@ import com.lovespace.util.JwtUtil;
 import com.lovespace.util.PasswordUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -22,6 +23,9 @@ public class UserService extends ServiceImpl<UserMapper, User> {
     private final JwtUtil jwtUtil;
     private final PasswordUtil passwordUtil;
     private final SpaceService spaceService;
+    private final UserProfileCache userProfileCache;
+    private final MediaObjectService mediaObjectService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${couple.user1.username:}")
     private String ownerUsername1;
@@ -103,11 +107,17 @@ public class UserService extends ServiceImpl<UserMapper, User> {
         if (updateUser.getNickname() != null) {
             user.setNickname(updateUser.getNickname());
         }
-        if (updateUser.getAvatar() != null) {
+        if (updateUser.getAvatar() != null && !updateUser.getAvatar().equals(user.getAvatar())) {
+            // 只释放去重登记过的旧头像，默认头像等历史文件不删除
+            mediaObjectService.retain(updateUser.getAvatar());
+            mediaObjectService.release(user.getAvatar());
             user.setAvatar(updateUser.getAvatar());
         }
         
         this.updateById(user);
+        userProfileCache.invalidate(userId);
+        // 首页快照里带有作者和评论者资料，资料变化时全部重建
+        eventPublisher.publishEvent(DashboardChangedEvent.moments(null));
         user.setPassword(null);
         return Result.success("更新成功", user);
     }
@@ -127,6 +137,7 @@ public class UserService extends ServiceImpl<UserMapper, User> {
         
         user.setPassword(passwordUtil.encode(newPassword));
         this.updateById(user);
+        userProfileCache.invalidate(userId);
         
         return Result.success("密码修改成功", null);
     }
@@ -0,0 +1,125 @@
+package com.lovespace.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 本地文件系统存储，文件位于 upload.path 下并通过 /uploads/** 访问
+ */
+@Component
+public class LocalObjectStorage implements ObjectStorage {
+
+    private static final long TRANSFER_CHUNK = 1024 * 1024;
+
+    private final Path baseDir;
+    private final String urlPrefix;
+
+    public LocalObjectStorage(@Value("${upload.path}") String uploadPath,
+                              @Value("${upload.url-prefix}") String urlPrefix) {
+        this.baseDir = Paths.get(uploadPath).toAbsolutePath().normalize();
+        this.urlPrefix = urlPrefix;
+    }
+
+    @Override
+    public String put(String key, InputStream in, long size, String contentType) throws IOException {
+        Path target = resolvePath(key);
+        if (target == null) {
+            throw new IOException("无效的文件路径");
+        }
+        Files.createDirectories(target.getParent());
+        // 先写同目录临时文件再原子替换，写入中途失败不会留下半个文件
+        Path temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            try (ReadableByteChannel source = Channels.newChannel(in);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                long position = 0;
+                long transferred;
+                while ((transferred = out.transferFrom(source, position, TRANSFER_CHUNK)) > 0) {
+                    position += transferred;
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return publicUrl(key);
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        Path path = resolvePath(key);
+        if (path == null) {
+            throw new IOException("无效的文件路径");
+        }
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        Path path = resolvePath(key);
+        if (path == null || Files.isDirectory(path)) {
+            throw new IOException("无效的文件路径");
+        }
+        return Files.deleteIfExists(path);
+    }
+
+    @Override
+    public String publicUrl(String key) {
+        return urlPrefix + "/" + key;
+    }
+
+    @Override
+    public String resolveKey(String url) {
+        if (url == null || !url.startsWith(urlPrefix)) {
+            return null;
+        }
+        String relativePath = url.substring(urlPrefix.length());
+        int queryIndex = relativePath.indexOf('?');
+        if (queryIndex >= 0) {
+            relativePath = relativePath.substring(0, queryIndex);
+        }
+        int fragmentIndex = relativePath.indexOf('#');
+        if (fragmentIndex >= 0) {
+            relativePath = relativePath.substring(0, fragmentIndex);
+        }
+        while (relativePath.startsWith("/")) {
+            relativePath = relativePath.substring(1);
+        }
+        return resolvePath(relativePath) == null ? null : relativePath;
+    }
+
+    @Override
+    public boolean supportsImageProcessing() {
+        return false;
+    }
+
+    /**
+     * key 对应的本地路径，越界时返回 null
+     */
+    public Path resolvePath(String key) {
+        if (key == null) {
+            return null;
+        }
+        Path target = baseDir.resolve(key.replace("/", File.separator)).normalize();
+        if (!target.startsWith(baseDir) || target.equals(baseDir)) {
+            return null;
+        }
+        return target;
+    }
+
+    public Path getBaseDir() {
+        return baseDir;
+    }
+}
@@ -0,0 +1,44 @@
+package com.lovespace.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 媒体对象存储（OSS / 本地文件系统）
+ */
+public interface ObjectStorage {
+
+    /**
+     * 写入对象并返回访问 URL
+     *
+     * @param key         对象路径，如 images/2026/01/21/xxx.jpg
+     * @param size        内容长度，未知时传 -1
+     * @param contentType 可为空
+     */
+    String put(String key, InputStream in, long size, String contentType) throws IOException;
+
+    /**
+     * 读取对象内容
+     */
+    InputStream open(String key) throws IOException;
+
+    /**
+     * 删除对象，对象不存在时返回 false
+     */
+    boolean delete(String key) throws IOException;
+
+    /**
+     * 对象 key 对应的访问 URL
+     */
+    String publicUrl(String key);
+
+    /**
+     * 从 URL 中解析对象 key，不属于本存储时返回 null
+     */
+    String resolveKey(String url);
+
+    /**
+     * 是否支持通过 URL 参数（x-oss-process）实时处理图片
+     */
+    boolean supportsImageProcessing();
+}
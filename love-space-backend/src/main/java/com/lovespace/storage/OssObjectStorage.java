@@ -0,0 +1,256 @@
+package com.lovespace.storage;
+
+import com.aliyun.oss.ClientBuilderConfiguration;
+import com.aliyun.oss.ClientException;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSClientBuilder;
+import com.aliyun.oss.OSSException;
+import com.aliyun.oss.model.AbortMultipartUploadRequest;
+import com.aliyun.oss.model.CompleteMultipartUploadRequest;
+import com.aliyun.oss.model.InitiateMultipartUploadRequest;
+import com.aliyun.oss.model.ObjectMetadata;
+import com.aliyun.oss.model.PartETag;
+import com.aliyun.oss.model.UploadPartRequest;
+import com.lovespace.config.OssProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 阿里云 OSS 存储：进程内共享一个带连接池的客户端，大文件分片并行上传
+ */
+@Slf4j
+public class OssObjectStorage implements ObjectStorage {
+
+    private final OssProperties properties;
+    private final OSS client;
+    private final ExecutorService partExecutor;
+
+    public OssObjectStorage(OssProperties properties) {
+        this.properties = properties;
+        ClientBuilderConfiguration conf = new ClientBuilderConfiguration();
+        conf.setMaxConnections(properties.getMaxConnections());
+        conf.setConnectionTimeout(properties.getConnectionTimeoutMs());
+        conf.setSocketTimeout(properties.getSocketTimeoutMs());
+        conf.setIdleConnectionTime(properties.getIdleConnectionTimeMs());
+        this.client = new OSSClientBuilder().build(
+                properties.getEndpoint(), properties.getAccessKeyId(), properties.getAccessKeySecret(), conf);
+        int parallelism = Math.max(1, properties.getUploadParallelism());
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.partExecutor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "oss-part-upload-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public String put(String key, InputStream in, long size, String contentType) throws IOException {
+        String objectKey = objectKey(key);
+        ObjectMetadata metadata = buildMetadata(contentType);
+        try {
+            if (size < 0 || size > properties.getMultipartThreshold()) {
+                multipartUpload(objectKey, in, metadata);
+            } else {
+                metadata.setContentLength(size);
+                client.putObject(properties.getBucket(), objectKey, in, metadata);
+            }
+        } catch (OSSException | ClientException e) {
+            throw new IOException("OSS 上传失败：" + e.getMessage(), e);
+        }
+        return publicUrl(key);
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        try {
+            return client.getObject(properties.getBucket(), objectKey(key)).getObjectContent();
+        } catch (OSSException | ClientException e) {
+            throw new IOException("OSS 读取失败：" + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        if (key == null || key.isEmpty()) {
+            return false;
+        }
+        try {
+            client.deleteObject(properties.getBucket(), objectKey(key));
+            return true;
+        } catch (OSSException | ClientException e) {
+            throw new IOException("OSS 删除失败：" + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String publicUrl(String key) {
+        return baseUrl() + "/" + objectKey(key);
+    }
+
+    /**
+     * 返回去掉 base-path 后的相对 key
+     */
+    @Override
+    public String resolveKey(String url) {
+        if (url == null) {
+            return null;
+        }
+        String domain = properties.getDomain();
+        String prefix;
+        if (domain != null && !domain.isBlank() && url.startsWith(domain)) {
+            prefix = domain;
+        } else {
+            prefix = "https://" + properties.getBucket() + "." + properties.getEndpoint();
+            if (!url.startsWith(prefix)) {
+                return null;
+            }
+        }
+        String key = url.substring(prefix.length());
+        int queryIndex = key.indexOf("?");
+        if (queryIndex >= 0) {
+            key = key.substring(0, queryIndex);
+        }
+        int fragmentIndex = key.indexOf("#");
+        if (fragmentIndex >= 0) {
+            key = key.substring(0, fragmentIndex);
+        }
+        while (key.startsWith("/")) {
+            key = key.substring(1);
+        }
+        String basePrefix = objectKey("");
+        if (!key.startsWith(basePrefix)) {
+            return null;
+        }
+        key = key.substring(basePrefix.length());
+        return key.isEmpty() ? null : key;
+    }
+
+    @Override
+    public boolean supportsImageProcessing() {
+        return true;
+    }
+
+    /**
+     * 容器销毁时关闭连接池与上传线程
+     */
+    public void shutdown() {
+        partExecutor.shutdown();
+        try {
+            if (!partExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                partExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            partExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        client.shutdown();
+    }
+
+    /**
+     * 分片上传：顺序读取分片，最多 upload-parallelism 个分片同时上传，内存占用为 并行数 × 分片大小
+     */
+    private void multipartUpload(String objectKey, InputStream in, ObjectMetadata metadata) throws IOException {
+        String bucket = properties.getBucket();
+        InitiateMultipartUploadRequest initRequest = new InitiateMultipartUploadRequest(bucket, objectKey, metadata);
+        String uploadId = client.initiateMultipartUpload(initRequest).getUploadId();
+
+        int partSize = (int) Math.min(Integer.MAX_VALUE, Math.max(100 * 1024, properties.getPartSize()));
+        Semaphore inFlight = new Semaphore(Math.max(1, properties.getUploadParallelism()));
+        List<Future<PartETag>> futures = new ArrayList<>();
+        try {
+            int partNumber = 0;
+            while (true) {
+                byte[] buffer = in.readNBytes(partSize);
+                if (buffer.length == 0 && partNumber > 0) {
+                    break;
+                }
+                int number = ++partNumber;
+                inFlight.acquire();
+                futures.add(partExecutor.submit(() -> {
+                    try {
+                        UploadPartRequest partRequest = new UploadPartRequest(
+                                bucket, objectKey, uploadId, number, new ByteArrayInputStream(buffer), buffer.length);
+                        return client.uploadPart(partRequest).getPartETag();
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                if (buffer.length < partSize) {
+                    break;
+                }
+            }
+
+            List<PartETag> partETags = new ArrayList<>();
+            for (Future<PartETag> future : futures) {
+                partETags.add(future.get());
+            }
+            partETags.sort(Comparator.comparingInt(PartETag::getPartNumber));
+            client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, objectKey, uploadId, partETags));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(objectKey, uploadId, futures);
+            throw new IOException("分片上传被中断", e);
+        } catch (ExecutionException e) {
+            abort(objectKey, uploadId, futures);
+            throw new IOException("分片上传失败：" + e.getCause().getMessage(), e.getCause());
+        } catch (IOException | RuntimeException e) {
+            abort(objectKey, uploadId, futures);
+            throw e;
+        }
+    }
+
+    private void abort(String objectKey, String uploadId, List<Future<PartETag>> futures) {
+        futures.forEach(f -> f.cancel(true));
+        try {
+            client.abortMultipartUpload(new AbortMultipartUploadRequest(properties.getBucket(), objectKey, uploadId));
+        } catch (Exception e) {
+            log.warn("取消分片上传失败, key={}, uploadId={}", objectKey, uploadId, e);
+        }
+    }
+
+    private ObjectMetadata buildMetadata(String contentType) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        if (contentType != null && !contentType.isBlank()) {
+            metadata.setContentType(contentType);
+        }
+        metadata.setContentDisposition("inline");
+        metadata.setCacheControl("public, max-age=31536000, immutable");
+        return metadata;
+    }
+
+    private String objectKey(String key) {
+        String basePath = properties.getBasePath();
+        if (basePath == null || basePath.isBlank()) {
+            return key;
+        }
+        basePath = basePath.trim();
+        return basePath.endsWith("/") ? basePath + key : basePath + "/" + key;
+    }
+
+    private String baseUrl() {
+        String domain = properties.getDomain();
+        String baseUrl;
+        if (domain != null && !domain.isBlank()) {
+            baseUrl = domain;
+        } else {
+            baseUrl = "https://" + properties.getBucket() + "." + properties.getEndpoint();
+        }
+        while (baseUrl.endsWith("/")) {
+            baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
+        }
+        return baseUrl;
+    }
+}
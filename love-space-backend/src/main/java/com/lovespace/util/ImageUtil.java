@@ -0,0 +1,97 @@
+package com.lovespace.util;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * 图片缩放与编码
+ */
+public final class ImageUtil {
+
+    private ImageUtil() {
+    }
+
+    /**
+     * 按宽度等比缩放，原图不超过目标宽度时返回 null
+     */
+    public static BufferedImage scaleToWidth(BufferedImage source, int width, boolean keepAlpha) {
+        if (source.getWidth() <= width) {
+            return null;
+        }
+        double scale = (double) width / (double) source.getWidth();
+        return scale(source, width, Math.max(1, (int) Math.round(source.getHeight() * scale)), keepAlpha);
+    }
+
+    /**
+     * 按最长边等比缩放，原图不超过目标尺寸时返回 null
+     */
+    public static BufferedImage scaleToMaxSide(BufferedImage source, int maxSide, boolean keepAlpha) {
+        int sourceW = source.getWidth();
+        int sourceH = source.getHeight();
+        if (Math.max(sourceW, sourceH) <= maxSide) {
+            return null;
+        }
+        double scale = (double) maxSide / (double) Math.max(sourceW, sourceH);
+        int targetW = Math.max(1, (int) Math.round(sourceW * scale));
+        int targetH = Math.max(1, (int) Math.round(sourceH * scale));
+        return scale(source, targetW, targetH, keepAlpha);
+    }
+
+    /**
+     * 缩放到最长边不超过 maxSide，原图较小时按原尺寸重绘（用于重新编码压缩）
+     */
+    public static BufferedImage fitWithin(BufferedImage source, int maxSide, boolean keepAlpha) {
+        BufferedImage scaled = scaleToMaxSide(source, maxSide, keepAlpha);
+        return scaled != null ? scaled : scale(source, source.getWidth(), source.getHeight(), keepAlpha);
+    }
+
+    /**
+     * 编码为 PNG 或 JPEG
+     */
+    public static byte[] encode(BufferedImage image, boolean png, float jpegQuality) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (png) {
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+        }
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static BufferedImage scale(BufferedImage source, int targetW, int targetH, boolean keepAlpha) {
+        BufferedImage target = new BufferedImage(
+                targetW,
+                targetH,
+                keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB
+        );
+        Graphics2D g2d = target.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        if (!keepAlpha) {
+            g2d.setColor(Color.WHITE);
+            g2d.fillRect(0, 0, targetW, targetH);
+        }
+        g2d.drawImage(source, 0, 0, targetW, targetH, null);
+        g2d.dispose();
+        return target;
+    }
+}
@@ -0,0 +1,21 @@
+package com.lovespace.util;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 已验证的 Token 主体
+ */
+@Getter
+@RequiredArgsConstructor
+public class JwtPrincipal {
+
+    private final Long userId;
+    private final String username;
+    /** 过期时间（毫秒时间戳） */
+    private final long expiresAt;
+
+    public boolean isExpired(long now) {
+        return expiresAt <= now;
+    }
+}
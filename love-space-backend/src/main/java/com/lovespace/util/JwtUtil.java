@@ -2,13 +2,20 @@ package com.lovespace.util;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class JwtUtil {
@@ -18,8 +25,19 @@ public class JwtUtil {
     
     @Value("${jwt.expiration}")
     private Long expiration;
-    
-    private SecretKey getSigningKey() {
+
+    @Value("${jwt.verified-cache-size:1024}")
+    private int verifiedCacheSize;
+
+    private SecretKey signingKey;
+
+    private JwtParser parser;
+
+    /** 最近验证通过的 Token，key 为 Token 的 SHA-256 */
+    private final Map<String, JwtPrincipal> verifiedTokens = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
         if (!StringUtils.hasText(secret)) {
             throw new IllegalStateException("缺少必要配置项 jwt.secret（可通过环境变量 JWT_SECRET 设置）");
         }
@@ -27,7 +45,10 @@ public class JwtUtil {
         if (keyBytes.length < 32) {
             throw new IllegalStateException("配置项 jwt.secret 长度不足（至少 32 字节）");
         }
-        return Keys.hmacShaKeyFor(keyBytes);
+        this.signingKey = Keys.hmacShaKeyFor(keyBytes);
+        this.parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
     }
     
     /**
@@ -42,9 +63,43 @@ public class JwtUtil {
                 .claim("username", username)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
+
+    /**
+     * 验证 Token 并返回主体，无效或过期时返回 null
+     */
+    public JwtPrincipal verify(String token) {
+        if (!StringUtils.hasText(token)) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        String cacheKey = sha256(token);
+        JwtPrincipal cached = verifiedTokens.get(cacheKey);
+        if (cached != null) {
+            if (!cached.isExpired(now)) {
+                return cached;
+            }
+            verifiedTokens.remove(cacheKey);
+            return null;
+        }
+
+        JwtPrincipal principal;
+        try {
+            Claims claims = parseToken(token);
+            Date expiresAt = claims.getExpiration();
+            principal = new JwtPrincipal(
+                    Long.parseLong(claims.getSubject()),
+                    claims.get("username", String.class),
+                    expiresAt == null ? Long.MAX_VALUE : expiresAt.getTime());
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        verifiedTokens.put(cacheKey, principal);
+        evictIfNecessary(now);
+        return principal;
+    }
     
     /**
      * 从 Token 获取用户 ID
@@ -66,22 +121,34 @@ public class JwtUtil {
      * 解析 Token
      */
     private Claims parseToken(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
     
     /**
      * 验证 Token
      */
     public boolean validateToken(String token) {
+        return verify(token) != null;
+    }
+
+    private void evictIfNecessary(long now) {
+        if (verifiedTokens.size() <= verifiedCacheSize) {
+            return;
+        }
+        verifiedTokens.values().removeIf(p -> p.isExpired(now));
+        Iterator<String> it = verifiedTokens.keySet().iterator();
+        while (verifiedTokens.size() > verifiedCacheSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static String sha256(String value) {
         try {
-            parseToken(token);
-            return true;
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
 }
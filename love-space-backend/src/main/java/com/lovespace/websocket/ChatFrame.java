@@ -0,0 +1,47 @@
+package com.lovespace.websocket;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * 一次广播的消息帧：标准 JSON 与短键紧凑 JSON 都在第一次有会话需要时才序列化，之后复用，
+ * 目标会话都是同一种协议时另一种格式不会被序列化。跨节点传输只携带标准 JSON，由接收节点按会话协议编码。
+ */
+public final class ChatFrame {
+
+    private final ChatFrameCodec codec;
+    /** 本节点构造的帧持有原始消息树；从总线收到的帧为 null，需要紧凑格式时再解析标准 JSON */
+    private final ObjectNode payload;
+    private volatile String json;
+    private volatile String compact;
+
+    ChatFrame(ChatFrameCodec codec, ObjectNode payload, String json) {
+        this.codec = codec;
+        this.payload = payload;
+        this.json = json;
+    }
+
+    public String forProtocol(boolean compactProtocol) {
+        return compactProtocol ? compact() : json();
+    }
+
+    /**
+     * 标准格式，也是跨节点传输时的编码
+     */
+    public String json() {
+        String result = json;
+        if (result == null) {
+            result = payload.toString();
+            json = result;
+        }
+        return result;
+    }
+
+    private String compact() {
+        String result = compact;
+        if (result == null) {
+            result = payload != null ? codec.toCompactJson(payload) : codec.toCompactJson(json);
+            compact = result;
+        }
+        return result;
+    }
+}
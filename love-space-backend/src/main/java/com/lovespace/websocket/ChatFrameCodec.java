@@ -0,0 +1,130 @@
+package com.lovespace.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 聊天帧编码：客户端在 auth 帧中声明 proto=compact 后改用短键 JSON，
+ * 字段名缩为一到两个字母，createdAt 改为毫秒时间戳。映射表需与前端 stores/chat.js 保持一致。
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatFrameCodec {
+
+    public static final String PROTOCOL_COMPACT = "compact";
+
+    private static final Map<String, String> SHORT_KEYS = Map.ofEntries(
+            Map.entry("event", "e"),
+            Map.entry("id", "i"),
+            Map.entry("fromUserId", "f"),
+            Map.entry("toUserId", "t"),
+            Map.entry("type", "y"),
+            Map.entry("content", "c"),
+            Map.entry("mediaUrl", "m"),
+            Map.entry("extra", "x"),
+            Map.entry("status", "s"),
+            Map.entry("createdAt", "a"),
+            Map.entry("clientId", "k"),
+            Map.entry("readerId", "r"),
+            Map.entry("partnerId", "p"),
+            Map.entry("lastReadId", "l"),
+            Map.entry("messages", "ms"),
+            Map.entry("done", "d"),
+            Map.entry("truncated", "tr"),
+            Map.entry("unread", "u"),
+            Map.entry("message", "g"),
+            Map.entry("userId", "ui"),
+            Map.entry("online", "o"),
+            Map.entry("typing", "ty"),
+            Map.entry("anniversaryId", "ai"),
+            Map.entry("title", "ti"),
+            Map.entry("icon", "ic"),
+            Map.entry("date", "dt"),
+            Map.entry("daysLeft", "dl")
+    );
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 一次广播只调用一次，返回的帧按目标会话实际使用的协议懒序列化；之后不能再修改 payload
+     */
+    public ChatFrame encode(ObjectNode payload) {
+        return new ChatFrame(this, payload, null);
+    }
+
+    /**
+     * 从总线收到的标准 JSON 还原为帧，紧凑格式在本节点有紧凑协议的会话时才生成
+     */
+    public ChatFrame decode(String json) {
+        return new ChatFrame(this, null, json);
+    }
+
+    /**
+     * 只发给单个会话的帧，按该会话的协议序列化一次
+     */
+    public String encode(ObjectNode payload, boolean compactProtocol) {
+        return compactProtocol ? toCompact(payload).toString() : payload.toString();
+    }
+
+    String toCompactJson(ObjectNode payload) {
+        return toCompact(payload).toString();
+    }
+
+    String toCompactJson(String json) {
+        try {
+            return toCompact(objectMapper.readTree(json)).toString();
+        } catch (JsonProcessingException e) {
+            return json;
+        }
+    }
+
+    private JsonNode toCompact(JsonNode node) {
+        if (node.isArray()) {
+            ArrayNode array = objectMapper.createArrayNode();
+            node.forEach(item -> array.add(toCompact(item)));
+            return array;
+        }
+        if (!node.isObject()) {
+            return node;
+        }
+        ObjectNode compact = objectMapper.createObjectNode();
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            // 空字段不下发，由客户端按缺省处理
+            if (value.isNull()) {
+                continue;
+            }
+            String name = field.getKey();
+            String key = SHORT_KEYS.getOrDefault(name, name);
+            if ("createdAt".equals(name) && value.isTextual()) {
+                compact.set(key, toEpochMillis(value));
+            } else {
+                compact.set(key, toCompact(value));
+            }
+        }
+        return compact;
+    }
+
+    private JsonNode toEpochMillis(JsonNode value) {
+        try {
+            long millis = LocalDateTime.parse(value.asText())
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            return objectMapper.getNodeFactory().numberNode(millis);
+        } catch (DateTimeParseException e) {
+            return value;
+        }
+    }
+}
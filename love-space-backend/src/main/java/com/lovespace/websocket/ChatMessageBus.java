@@ -0,0 +1,30 @@
+package com.lovespace.websocket;
+
+import java.util.function.BiConsumer;
+
+/**
+ * 聊天消息总线：按用户ID路由消息帧（{@link ChatFrame}），投递到该用户连接所在的节点。
+ * 节点在用户的第一个连接认证后订阅，最后一个连接断开后退订。
+ */
+public interface ChatMessageBus {
+
+    /**
+     * 发往该用户所在的所有节点（包括本节点）
+     */
+    void publish(Long userId, ChatFrame frame);
+
+    /**
+     * 本节点开始接收发给该用户的消息
+     */
+    void subscribe(Long userId);
+
+    /**
+     * 本节点不再接收发给该用户的消息
+     */
+    void unsubscribe(Long userId);
+
+    /**
+     * 设置本节点的投递回调（用户ID, 消息帧）
+     */
+    void setListener(BiConsumer<Long, ChatFrame> listener);
+}
@@ -0,0 +1,30 @@
+package com.lovespace.websocket;
+
+import java.util.Collection;
+
+/**
+ * 跨节点的在线登记：用户在任一节点有连接即视为在线。
+ * 本节点上的连接变化由 {@link ChatPresenceTracker} 上报，离线前先确认其他节点上是否还有连接。
+ */
+public interface ChatPresenceStore {
+
+    /**
+     * 本节点有了该用户的连接
+     */
+    void markOnline(Long userId);
+
+    /**
+     * 本节点已没有该用户的连接，返回其他节点上是否仍在线
+     */
+    boolean markOffline(Long userId);
+
+    /**
+     * 该用户是否在其他节点上在线（本节点的连接由调用方自行判断）
+     */
+    boolean isOnline(Long userId);
+
+    /**
+     * 续期本节点上在线的用户，节点异常退出未能上报离线时，登记过期后自动失效
+     */
+    void refresh(Collection<Long> userIds);
+}
@@ -0,0 +1,175 @@
+package com.lovespace.websocket;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * 在线/输入中状态：只在内存中维护，不写 chat_message。
+ * 每个用户的状态变化按 max-updates-per-second 合并，间隔内多次变化只发送最后一次的状态。
+ * 多实例时在线状态经 {@link ChatPresenceStore} 跨节点汇总：本节点最后一个连接断开时，
+ * 若用户在其他节点上仍有连接，只清除输入中状态，不发送离线。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatPresenceTracker {
+
+    @Value("${chat.presence.max-updates-per-second:4}")
+    private int maxUpdatesPerSecond;
+
+    @Value("${chat.presence.ttl-seconds:90}")
+    private long ttlSeconds;
+
+    private final ChatPresenceStore presenceStore;
+
+    private final Map<Long, UserPresence> presences = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private volatile BiConsumer<Long, Presence> listener;
+
+    /**
+     * 某个用户的状态快照
+     */
+    public record Presence(boolean online, boolean typing) {
+    }
+
+    private static class UserPresence {
+        /** 本节点是否有该用户的连接 */
+        boolean local;
+        boolean online;
+        boolean typing;
+        /** 上次发出的状态，相同则不重复发送 */
+        Presence emitted;
+        long lastEmitAt;
+        boolean flushScheduled;
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "chat-presence");
+            t.setDaemon(true);
+            return t;
+        });
+        long refreshSeconds = Math.max(1, ttlSeconds / 3);
+        scheduler.scheduleWithFixedDelay(this::refreshLocal, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 设置状态变化的发送回调（用户ID, 状态）
+     */
+    public void setListener(BiConsumer<Long, Presence> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 本节点有了该用户的第一个连接
+     */
+    public void online(Long userId) {
+        presenceStore.markOnline(userId);
+        update(userId, true, true, false);
+    }
+
+    /**
+     * 本节点上该用户的最后一个连接断开，同时清除输入中状态
+     */
+    public void offline(Long userId) {
+        boolean elsewhere = presenceStore.markOffline(userId);
+        update(userId, false, elsewhere, false);
+    }
+
+    public void typing(Long userId, boolean typing) {
+        update(userId, true, true, typing);
+    }
+
+    public Presence get(Long userId) {
+        UserPresence presence = presences.get(userId);
+        if (presence != null) {
+            synchronized (presence) {
+                if (presence.local) {
+                    return new Presence(presence.online, presence.typing);
+                }
+            }
+        }
+        return new Presence(presenceStore.isOnline(userId), false);
+    }
+
+    private void refreshLocal() {
+        List<Long> localUsers = presences.entrySet().stream()
+                .filter(e -> {
+                    synchronized (e.getValue()) {
+                        return e.getValue().local;
+                    }
+                })
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!localUsers.isEmpty()) {
+            presenceStore.refresh(localUsers);
+        }
+    }
+
+    private void update(Long userId, boolean local, boolean online, boolean typing) {
+        UserPresence presence = presences.computeIfAbsent(userId, k -> new UserPresence());
+        long delay;
+        synchronized (presence) {
+            presence.local = local;
+            presence.online = online;
+            presence.typing = typing;
+            if (presence.flushScheduled) {
+                return;
+            }
+            long interval = TimeUnit.SECONDS.toMillis(1) / Math.max(1, maxUpdatesPerSecond);
+            delay = presence.lastEmitAt + interval - System.currentTimeMillis();
+            if (delay > 0) {
+                presence.flushScheduled = true;
+            }
+        }
+        if (delay > 0) {
+            scheduler.schedule(() -> flush(userId, presence), delay, TimeUnit.MILLISECONDS);
+        } else {
+            flush(userId, presence);
+        }
+    }
+
+    private void flush(Long userId, UserPresence presence) {
+        Presence current;
+        synchronized (presence) {
+            presence.flushScheduled = false;
+            current = new Presence(presence.online, presence.typing);
+            if (!presence.local) {
+                // 本节点已没有连接的用户不再保留状态；之后重新连接会新建
+                presences.remove(userId, presence);
+            }
+            if (current.equals(presence.emitted)) {
+                return;
+            }
+            presence.emitted = current;
+            presence.lastEmitAt = System.currentTimeMillis();
+        }
+        BiConsumer<Long, Presence> callback = listener;
+        if (callback == null) {
+            return;
+        }
+        try {
+            callback.accept(userId, current);
+        } catch (Exception e) {
+            log.warn("发送在线状态失败, userId={}", userId, e);
+        }
+    }
+}
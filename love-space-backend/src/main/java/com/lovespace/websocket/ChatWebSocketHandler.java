@@ -2,21 +2,31 @@ package com.lovespace.websocket;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.lovespace.entity.Anniversary;
 import com.lovespace.entity.ChatMessage;
+import com.lovespace.service.ChatMessageIdAllocator;
 import com.lovespace.service.ChatMessageService;
+import com.lovespace.service.ChatMessageWriter;
+import com.lovespace.service.FileService;
 import com.lovespace.service.SpaceService;
+import com.lovespace.util.JwtPrincipal;
 import com.lovespace.util.JwtUtil;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import java.io.IOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -30,16 +40,50 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     private final ObjectMapper objectMapper;
     private final ChatMessageService chatMessageService;
     private final SpaceService spaceService;
+    private final FileService fileService;
+    private final WebSocketSendDispatcher sendDispatcher;
+    private final ChatMessageIdAllocator idAllocator;
+    private final ChatMessageWriter chatMessageWriter;
+    private final ChatMessageBus messageBus;
+    private final ChatFrameCodec frameCodec;
+    private final WebSocketSessionMonitor sessionMonitor;
+    private final ChatPresenceTracker presenceTracker;
 
+    /** sync：写库后再投递；write-behind：先投递，批量落库后再向发送方确认 */
+    @Value("${chat.persistence.mode:sync}")
+    private String persistenceMode;
+
+    /** 断线补发每帧最多携带的消息数 */
+    @Value("${chat.sync.batch-size:100}")
+    private int syncBatchSize;
+
+    /** 单次补发上限，缺口更大时通知客户端改为重新拉取最新一页 */
+    @Value("${chat.sync.max-messages:1000}")
+    private int syncMaxMessages;
+
+    /** 补发从 lastSeenId 发送时间之前这么多秒开始，覆盖其他节点号段更小、稍晚落库或时钟略有偏差的消息 */
+    @Value("${chat.sync.rescan-seconds:5}")
+    private int syncRescanSeconds;
+
+    /** 本节点上各用户的连接，跨节点投递经 ChatMessageBus 路由 */
     private final Map<Long, Set<WebSocketSession>> userSessions = new ConcurrentHashMap<>();
 
+    @PostConstruct
+    public void init() {
+        messageBus.setListener(this::deliverLocal);
+        presenceTracker.setListener(this::broadcastPresence);
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        sendDispatcher.register(session);
+        sessionMonitor.opened(session);
         log.info("WebSocket connected, sessionId={}", session.getId());
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        sessionMonitor.touch(session);
         Long fromUserId = (Long) session.getAttributes().get("userId");
         JsonNode node = objectMapper.readTree(message.getPayload());
         String type = node.path("type").asText();
@@ -58,20 +102,40 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             }
 
             session.getAttributes().put("userId", authedUserId);
-            userSessions
-                    .computeIfAbsent(authedUserId, k -> ConcurrentHashMap.newKeySet())
-                    .add(session);
+            boolean compact = ChatFrameCodec.PROTOCOL_COMPACT.equals(node.path("proto").asText(null));
+            session.getAttributes().put("compact", compact);
+            userSessions.compute(authedUserId, (k, sessions) -> {
+                if (sessions == null) {
+                    sessions = ConcurrentHashMap.newKeySet();
+                    messageBus.subscribe(k);
+                    presenceTracker.online(k);
+                }
+                sessions.add(session);
+                return sessions;
+            });
 
             ObjectNode payload = objectMapper.createObjectNode();
             payload.put("event", "auth");
             payload.put("status", "ok");
-            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(payload)));
+            // 认证响应仍用标准格式，客户端据 proto 决定之后的解码方式
+            payload.put("proto", compact ? ChatFrameCodec.PROTOCOL_COMPACT : "json");
+            sendDispatcher.send(session, objectMapper.writeValueAsString(payload));
             log.info("WebSocket authed, userId={}, sessionId={}", authedUserId, session.getId());
+            // 先订阅再补发，补发期间到达的实时消息由客户端按ID去重
+            syncMissed(session, authedUserId, node.path("lastSeenId").asLong(0));
+            sendPartnerPresence(session, authedUserId);
+            return;
+        }
+
+        // 输入中状态只转发不落库
+        if ("typing".equals(type)) {
+            presenceTracker.typing(fromUserId, node.path("typing").asBoolean(false));
             return;
         }
 
         String content = node.path("content").asText(null);
         String mediaUrl = node.path("mediaUrl").asText(null);
+        String clientId = node.path("clientId").asText(null);
         String extra = node.path("extra").isMissingNode() || node.path("extra").isNull()
                 ? null
                 : node.path("extra").toString();
@@ -86,7 +150,9 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         }
 
         ChatMessage chatMessage = new ChatMessage();
+        chatMessage.setId(idAllocator.nextId());
         chatMessage.setSpaceId(spaceId);
+        chatMessage.setConversationId(ChatMessageService.conversationId(fromUserId, toUserId));
         chatMessage.setFromUserId(fromUserId);
         chatMessage.setToUserId(toUserId);
         chatMessage.setType(type);
@@ -95,8 +161,119 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         chatMessage.setExtra(extra);
         chatMessage.setStatus("sent");
         chatMessage.setCreatedAt(LocalDateTime.now());
-        chatMessageService.save(chatMessage);
+        ChatFrame frame = frameCodec.encode(toPayload(chatMessage, clientId));
+
+        if (!"write-behind".equals(persistenceMode)) {
+            chatMessageService.save(chatMessage);
+            retainMedia(mediaUrl);
+            messageBus.publish(fromUserId, frame);
+            messageBus.publish(toUserId, frame);
+            return;
+        }
+
+        // 对方立即收到；发送方收到回显即表示消息已落库
+        messageBus.publish(toUserId, frame);
+        chatMessageWriter.submit(chatMessage).whenComplete((saved, error) -> {
+            if (error != null) {
+                ObjectNode failure = objectMapper.createObjectNode();
+                failure.put("event", "error");
+                failure.put("clientId", clientId);
+                failure.put("message", "消息发送失败");
+                broadcastToUser(fromUserId, failure);
+                return;
+            }
+            retainMedia(mediaUrl);
+            messageBus.publish(fromUserId, frame);
+        });
+    }
+
+    /**
+     * 补发 lastSeenId 之后的消息（含写后模式下尚未落库的），分批成 sync 帧，
+     * 最后一帧 done=true 附带对方已读水位和未读数，客户端收到后进入实时模式。
+     * 多实例时 ID 不代表发送顺序，因此按发送时间回看一小段窗口，重复的消息由客户端按 ID 去重
+     */
+    private void syncMissed(WebSocketSession session, Long userId, long lastSeenId) {
+        Long partnerId = chatMessageService.getPartnerId(userId);
+        if (partnerId == null) {
+            return;
+        }
+        String conversationId = ChatMessageService.conversationId(userId, partnerId);
+        boolean truncated = false;
+        if (lastSeenId > 0) {
+            LocalDateTime lastSeenAt = lastSeenAt(conversationId, lastSeenId);
+            if (lastSeenAt == null) {
+                // 找不到客户端最后一条消息，无法定位缺口，让客户端重新拉取最新一页
+                truncated = true;
+            } else {
+                LocalDateTime since = lastSeenAt.minusSeconds(syncRescanSeconds);
+                LocalDateTime cursorTime = since;
+                long cursorId = 0;
+                int synced = 0;
+                while (true) {
+                    List<ChatMessage> batch = chatMessageService.listAfter(userId, partnerId, cursorTime, cursorId, syncBatchSize);
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    sendSyncFrame(session, batch);
+                    ChatMessage last = batch.get(batch.size() - 1);
+                    cursorTime = last.getCreatedAt();
+                    cursorId = last.getId();
+                    synced += batch.size();
+                    if (batch.size() < syncBatchSize) {
+                        break;
+                    }
+                    if (synced >= syncMaxMessages) {
+                        truncated = true;
+                        break;
+                    }
+                }
+                if (!truncated) {
+                    List<ChatMessage> pending = chatMessageWriter.pending(conversationId, since);
+                    if (!pending.isEmpty()) {
+                        sendSyncFrame(session, pending);
+                    }
+                }
+            }
+        }
+
+        ObjectNode done = objectMapper.createObjectNode();
+        done.put("event", "sync");
+        done.put("done", true);
+        done.put("truncated", truncated);
+        done.put("readerId", partnerId);
+        done.put("lastReadId", chatMessageService.getReadWatermark(partnerId, userId));
+        done.put("unread", chatMessageService.countUnread(userId, partnerId));
+        sendDispatcher.send(session, frameCodec.encode(done, isCompact(session)));
+    }
+
+    /**
+     * 客户端最后收到的消息的发送时间，写后模式下可能还在本节点的待落库队列中
+     */
+    private LocalDateTime lastSeenAt(String conversationId, long lastSeenId) {
+        LocalDateTime createdAt = chatMessageService.getCreatedAt(conversationId, lastSeenId);
+        if (createdAt != null) {
+            return createdAt;
+        }
+        for (ChatMessage message : chatMessageWriter.pending(conversationId, LocalDateTime.MIN)) {
+            if (message.getId() == lastSeenId) {
+                return message.getCreatedAt();
+            }
+        }
+        return null;
+    }
+
+    private void sendSyncFrame(WebSocketSession session, List<ChatMessage> messages) {
+        ObjectNode frame = objectMapper.createObjectNode();
+        frame.put("event", "sync");
+        frame.put("done", false);
+        ArrayNode array = frame.putArray("messages");
+        for (ChatMessage message : messages) {
+            array.add(toPayload(message, null));
+        }
+        sendDispatcher.send(session, frameCodec.encode(frame, isCompact(session)));
+    }
 
+    private ObjectNode toPayload(ChatMessage chatMessage, String clientId) {
         ObjectNode payload = objectMapper.createObjectNode();
         payload.put("id", chatMessage.getId());
         payload.put("fromUserId", chatMessage.getFromUserId());
@@ -107,22 +284,38 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         payload.put("extra", chatMessage.getExtra());
         payload.put("status", chatMessage.getStatus());
         payload.put("createdAt", chatMessage.getCreatedAt().toString());
+        if (clientId != null) {
+            payload.put("clientId", clientId);
+        }
+        return payload;
+    }
 
-        broadcastToUser(fromUserId, payload);
-        broadcastToUser(toUserId, payload);
+    private void retainMedia(String mediaUrl) {
+        if (mediaUrl != null && !mediaUrl.isBlank()) {
+            fileService.retainFile(mediaUrl);
+        }
+    }
+
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        sessionMonitor.touch(session);
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        sendDispatcher.unregister(session);
+        sessionMonitor.closed(session);
         Long userId = (Long) session.getAttributes().get("userId");
         if (userId != null) {
-            Set<WebSocketSession> sessions = userSessions.get(userId);
-            if (sessions != null) {
+            userSessions.computeIfPresent(userId, (k, sessions) -> {
                 sessions.remove(session);
                 if (sessions.isEmpty()) {
-                    userSessions.remove(userId);
+                    messageBus.unsubscribe(k);
+                    presenceTracker.offline(k);
+                    return null;
                 }
-            }
+                return sessions;
+            });
         }
         log.info("WebSocket closed, userId={}, sessionId={}, reason={}", userId, session.getId(), status);
     }
@@ -131,46 +324,88 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         if (token == null || token.isBlank()) {
             return null;
         }
-        if (!jwtUtil.validateToken(token)) {
-            return null;
+        JwtPrincipal principal = jwtUtil.verify(token);
+        return principal == null ? null : principal.getUserId();
+    }
+
+    /**
+     * 经消息总线发往该用户所在的节点，各格式按目标会话的协议按需序列化、最多一次
+     */
+    private void broadcastToUser(Long userId, ObjectNode payload) {
+        messageBus.publish(userId, frameCodec.encode(payload));
+    }
+
+    /**
+     * 合并后的在线/输入中状态发给对方
+     */
+    private void broadcastPresence(Long userId, ChatPresenceTracker.Presence presence) {
+        Long partnerId = chatMessageService.getPartnerId(userId);
+        if (partnerId != null) {
+            broadcastToUser(partnerId, toPresencePayload(userId, presence));
+        }
+    }
+
+    /**
+     * 新连接认证后告知对方当前状态
+     */
+    private void sendPartnerPresence(WebSocketSession session, Long userId) {
+        Long partnerId = chatMessageService.getPartnerId(userId);
+        if (partnerId == null) {
+            return;
         }
-        return jwtUtil.getUserIdFromToken(token);
+        ObjectNode payload = toPresencePayload(partnerId, presenceTracker.get(partnerId));
+        sendDispatcher.send(session, frameCodec.encode(payload, isCompact(session)));
+    }
+
+    private ObjectNode toPresencePayload(Long userId, ChatPresenceTracker.Presence presence) {
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("event", "presence");
+        payload.put("userId", userId);
+        payload.put("online", presence.online());
+        payload.put("typing", presence.typing());
+        return payload;
     }
 
-    private void broadcastToUser(Long userId, ObjectNode payload) throws IOException {
+    private boolean isCompact(WebSocketSession session) {
+        return Boolean.TRUE.equals(session.getAttributes().get("compact"));
+    }
+
+    /**
+     * 总线回调：放入本节点该用户各会话的发送队列，不在当前线程写网络
+     */
+    private void deliverLocal(Long userId, ChatFrame frame) {
         Set<WebSocketSession> sessions = userSessions.get(userId);
         if (sessions == null || sessions.isEmpty()) {
             return;
         }
-        TextMessage textMessage = new TextMessage(objectMapper.writeValueAsString(payload));
         for (WebSocketSession s : sessions) {
-            if (s.isOpen()) {
-                s.sendMessage(textMessage);
-            }
+            sendDispatcher.send(s, frame.forProtocol(isCompact(s)));
         }
     }
 
-    public void notifyRead(Long readerId, Long partnerId, java.util.List<Long> messageIds) throws IOException {
-        if (messageIds == null || messageIds.isEmpty()) {
-            return;
-        }
-        Set<WebSocketSession> sessions = userSessions.get(partnerId);
-        if (sessions == null || sessions.isEmpty()) {
-            return;
-        }
+    /**
+     * 纪念日提醒，只推送给在线的会话
+     */
+    public void notifyReminder(Long userId, Anniversary anniversary, LocalDate occurrence, long daysLeft) {
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("event", "reminder");
+        payload.put("anniversaryId", anniversary.getId());
+        payload.put("title", anniversary.getTitle());
+        payload.put("icon", anniversary.getIcon());
+        payload.put("date", occurrence.toString());
+        payload.put("daysLeft", daysLeft);
+        broadcastToUser(userId, payload);
+    }
+
+    /**
+     * 通知对方已读水位，对方据此把不超过水位的消息标为已读
+     */
+    public void notifyRead(Long readerId, Long partnerId, long lastReadId) {
         ObjectNode payload = objectMapper.createObjectNode();
         payload.put("event", "read");
         payload.put("readerId", readerId);
         payload.put("partnerId", partnerId);
-        var array = payload.putArray("messageIds");
-        for (Long id : messageIds) {
-            array.add(id);
-        }
-        TextMessage textMessage = new TextMessage(objectMapper.writeValueAsString(payload));
-        for (WebSocketSession s : sessions) {
-            if (s.isOpen()) {
-                s.sendMessage(textMessage);
-            }
-        }
+        payload.put("lastReadId", lastReadId);
+        broadcastToUser(partnerId, payload);
     }
 }
@@ -0,0 +1,42 @@
+package com.lovespace.websocket;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * 进程内消息总线（单实例部署，也用于本地联调）：与 Redis 实现一样只投递给已订阅的用户
+ */
+@Component
+@ConditionalOnProperty(name = "chat.bus.type", havingValue = "local", matchIfMissing = true)
+public class LocalChatMessageBus implements ChatMessageBus {
+
+    private final Set<Long> subscribedUsers = ConcurrentHashMap.newKeySet();
+    private volatile BiConsumer<Long, ChatFrame> listener;
+
+    @Override
+    public void publish(Long userId, ChatFrame frame) {
+        BiConsumer<Long, ChatFrame> current = listener;
+        if (current != null && subscribedUsers.contains(userId)) {
+            current.accept(userId, frame);
+        }
+    }
+
+    @Override
+    public void subscribe(Long userId) {
+        subscribedUsers.add(userId);
+    }
+
+    @Override
+    public void unsubscribe(Long userId) {
+        subscribedUsers.remove(userId);
+    }
+
+    @Override
+    public void setListener(BiConsumer<Long, ChatFrame> listener) {
+        this.listener = listener;
+    }
+}
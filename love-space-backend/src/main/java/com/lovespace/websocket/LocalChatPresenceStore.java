@@ -0,0 +1,32 @@
+package com.lovespace.websocket;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * 单实例部署：所有连接都在本节点，不需要额外登记
+ */
+@Component
+@ConditionalOnProperty(name = "chat.bus.type", havingValue = "local", matchIfMissing = true)
+public class LocalChatPresenceStore implements ChatPresenceStore {
+
+    @Override
+    public void markOnline(Long userId) {
+    }
+
+    @Override
+    public boolean markOffline(Long userId) {
+        return false;
+    }
+
+    @Override
+    public boolean isOnline(Long userId) {
+        return false;
+    }
+
+    @Override
+    public void refresh(Collection<Long> userIds) {
+    }
+}
@@ -0,0 +1,86 @@
+package com.lovespace.websocket;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+/**
+ * 基于 Redis Pub/Sub 的消息总线（多实例部署）：每个用户一个频道 chat:user:{userId}，
+ * 只有该用户有连接的节点订阅，消息只会送到相关节点。频道上只传标准 JSON，紧凑格式由接收节点按需生成。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.bus.type", havingValue = "redis")
+public class RedisChatMessageBus implements ChatMessageBus, MessageListener {
+
+    private static final String CHANNEL_PREFIX = "chat:user:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ChatFrameCodec frameCodec;
+    private final RedisMessageListenerContainer container;
+    private volatile BiConsumer<Long, ChatFrame> listener;
+
+    public RedisChatMessageBus(RedisConnectionFactory connectionFactory, StringRedisTemplate redisTemplate,
+                               ChatFrameCodec frameCodec) {
+        this.redisTemplate = redisTemplate;
+        this.frameCodec = frameCodec;
+        this.container = new RedisMessageListenerContainer();
+        this.container.setConnectionFactory(connectionFactory);
+        this.container.afterPropertiesSet();
+        this.container.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws Exception {
+        container.destroy();
+    }
+
+    @Override
+    public void publish(Long userId, ChatFrame frame) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL_PREFIX + userId, frame.json());
+        } catch (Exception e) {
+            log.warn("发布聊天消息失败, userId={}", userId, e);
+        }
+    }
+
+    @Override
+    public void subscribe(Long userId) {
+        container.addMessageListener(this, new ChannelTopic(CHANNEL_PREFIX + userId));
+    }
+
+    @Override
+    public void unsubscribe(Long userId) {
+        container.removeMessageListener(this, new ChannelTopic(CHANNEL_PREFIX + userId));
+    }
+
+    @Override
+    public void setListener(BiConsumer<Long, ChatFrame> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        BiConsumer<Long, ChatFrame> current = listener;
+        if (current == null) {
+            return;
+        }
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        try {
+            Long userId = Long.valueOf(channel.substring(CHANNEL_PREFIX.length()));
+            current.accept(userId, frameCodec.decode(new String(message.getBody(), StandardCharsets.UTF_8)));
+        } catch (NumberFormatException e) {
+            log.warn("无法识别的聊天频道, channel={}", channel);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.lovespace.websocket;
+
+import com.lovespace.config.NodeIdentity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * 基于 Redis 的在线登记（多实例部署）：每个用户一个有序集合 chat:presence:{userId}，
+ * 成员为有连接的节点，分数为该节点登记的过期时间，节点定期续期。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.bus.type", havingValue = "redis")
+public class RedisChatPresenceStore implements ChatPresenceStore {
+
+    private static final String KEY_PREFIX = "chat:presence:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final NodeIdentity nodeIdentity;
+    private final long ttlMillis;
+
+    public RedisChatPresenceStore(StringRedisTemplate redisTemplate, NodeIdentity nodeIdentity,
+                                  @Value("${chat.presence.ttl-seconds:90}") long ttlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.nodeIdentity = nodeIdentity;
+        this.ttlMillis = ttlSeconds * 1000L;
+    }
+
+    @Override
+    public void markOnline(Long userId) {
+        try {
+            register(userId, System.currentTimeMillis());
+        } catch (Exception e) {
+            log.warn("登记在线状态失败, userId={}", userId, e);
+        }
+    }
+
+    @Override
+    public boolean markOffline(Long userId) {
+        String key = KEY_PREFIX + userId;
+        try {
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForZSet().remove(key, nodeIdentity.getId());
+            redisTemplate.opsForZSet().removeRangeByScore(key, 0, now);
+            Long remaining = redisTemplate.opsForZSet().zCard(key);
+            return remaining != null && remaining > 0;
+        } catch (Exception e) {
+            log.warn("登记离线状态失败, userId={}", userId, e);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isOnline(Long userId) {
+        try {
+            Long count = redisTemplate.opsForZSet().count(KEY_PREFIX + userId,
+                    System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+            return count != null && count > 0;
+        } catch (Exception e) {
+            log.warn("查询在线状态失败, userId={}", userId, e);
+            return false;
+        }
+    }
+
+    @Override
+    public void refresh(Collection<Long> userIds) {
+        long now = System.currentTimeMillis();
+        for (Long userId : userIds) {
+            try {
+                register(userId, now);
+            } catch (Exception e) {
+                log.warn("续期在线状态失败, userId={}", userId, e);
+            }
+        }
+    }
+
+    private void register(Long userId, long now) {
+        String key = KEY_PREFIX + userId;
+        redisTemplate.opsForZSet().add(key, nodeIdentity.getId(), now + ttlMillis);
+        // 所有节点都不再续期后整个 key 过期
+        redisTemplate.expire(key, Duration.ofMillis(ttlMillis * 2));
+    }
+}
@@ -0,0 +1,148 @@
+package com.lovespace.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个 WebSocket 会话的发送队列：调用方只入队，由发送线程池串行写出，
+ * 同一会话不会并发 sendMessage，慢连接也不会阻塞业务线程。
+ * 积压多条时合并成一个 JSON 数组帧发送。
+ */
+@Slf4j
+public class SessionOutbox {
+
+    /** 队列满时的处理方式 */
+    public enum OverflowPolicy {
+        /** 丢弃最早的待发消息 */
+        DROP_OLDEST,
+        /** 关闭慢连接，由客户端重连后补齐 */
+        CLOSE
+    }
+
+    private final WebSocketSession session;
+    private final Executor dispatcher;
+    private final OverflowPolicy overflowPolicy;
+    private final int maxBatch;
+    private final BlockingQueue<String> queue;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicBoolean pingRequested = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public SessionOutbox(WebSocketSession session, Executor dispatcher, int capacity,
+                         int maxBatch, OverflowPolicy overflowPolicy) {
+        this.session = session;
+        this.dispatcher = dispatcher;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * 入队一条已序列化的 JSON 消息，连接已关闭或被判定为慢连接时返回 false
+     */
+    public boolean offer(String frame) {
+        if (!session.isOpen()) {
+            return false;
+        }
+        if (!queue.offer(frame)) {
+            if (overflowPolicy == OverflowPolicy.CLOSE) {
+                log.warn("WebSocket 发送积压，关闭慢连接, sessionId={}", session.getId());
+                close(CloseStatus.SESSION_NOT_RELIABLE.withReason("slow consumer"));
+                return false;
+            }
+            do {
+                queue.poll();
+                dropped.incrementAndGet();
+            } while (!queue.offer(frame));
+        }
+        schedule();
+        return true;
+    }
+
+    /**
+     * 心跳 ping 也由发送线程写出，避免与文本帧并发写同一连接
+     */
+    public void ping() {
+        if (session.isOpen() && pingRequested.compareAndSet(false, true)) {
+            schedule();
+        }
+    }
+
+    public WebSocketSession getSession() {
+        return session;
+    }
+
+    public int getPending() {
+        return queue.size();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * 连接关闭后丢弃未发送的消息
+     */
+    public void clear() {
+        queue.clear();
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            dispatcher.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            scheduled.set(false);
+            log.warn("WebSocket 发送线程池已满，关闭连接, sessionId={}", session.getId());
+            close(CloseStatus.SERVICE_OVERLOAD);
+        }
+    }
+
+    /**
+     * 每次只发一批，队列仍有数据时重新排队，保证各会话轮流占用发送线程
+     */
+    private void drain() {
+        try {
+            if (pingRequested.getAndSet(false) && session.isOpen()) {
+                session.sendMessage(new PingMessage());
+            }
+            List<String> batch = new ArrayList<>();
+            queue.drainTo(batch, maxBatch);
+            if (!batch.isEmpty() && session.isOpen()) {
+                String payload = batch.size() == 1 ? batch.get(0) : "[" + String.join(",", batch) + "]";
+                session.sendMessage(new TextMessage(payload));
+            }
+        } catch (Exception e) {
+            log.warn("WebSocket 发送失败, sessionId={}", session.getId(), e);
+            queue.clear();
+            close(CloseStatus.SESSION_NOT_RELIABLE);
+        } finally {
+            scheduled.set(false);
+            if ((!queue.isEmpty() || pingRequested.get()) && session.isOpen()) {
+                schedule();
+            }
+        }
+    }
+
+    private void close(CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (Exception e) {
+            log.debug("关闭 WebSocket 失败, sessionId={}", session.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.lovespace.websocket;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket 发送线程池，为每个会话创建 {@link SessionOutbox}
+ */
+@Component
+public class WebSocketSendDispatcher {
+
+    private static final String OUTBOX_ATTRIBUTE = "outbox";
+
+    @Value("${ws.send.threads:4}")
+    private int threads;
+
+    @Value("${ws.send.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${ws.send.max-batch:32}")
+    private int maxBatch;
+
+    @Value("${ws.send.overflow-policy:CLOSE}")
+    private SessionOutbox.OverflowPolicy overflowPolicy;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 每个会话同一时刻最多只有一个发送任务在排队，任务队列按会话数留足余量
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(4096), r -> {
+            Thread t = new Thread(r, "ws-send-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 连接建立时创建发送队列并挂到会话属性上
+     */
+    public SessionOutbox register(WebSocketSession session) {
+        SessionOutbox outbox = new SessionOutbox(session, executor, queueCapacity, maxBatch, overflowPolicy);
+        session.getAttributes().put(OUTBOX_ATTRIBUTE, outbox);
+        return outbox;
+    }
+
+    public SessionOutbox outboxOf(WebSocketSession session) {
+        Object outbox = session.getAttributes().get(OUTBOX_ATTRIBUTE);
+        return outbox instanceof SessionOutbox ? (SessionOutbox) outbox : null;
+    }
+
+    /**
+     * 入队发送，会话没有发送队列（尚未建立完成）时返回 false
+     */
+    public boolean send(WebSocketSession session, String frame) {
+        SessionOutbox outbox = outboxOf(session);
+        return outbox != null && outbox.offer(frame);
+    }
+
+    public void unregister(WebSocketSession session) {
+        Object outbox = session.getAttributes().remove(OUTBOX_ATTRIBUTE);
+        if (outbox instanceof SessionOutbox) {
+            ((SessionOutbox) outbox).clear();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.lovespace.websocket;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 连接保活与清理：定期向每个会话发 ping（浏览器自动回 pong），
+ * 超过认证期限仍未发送 auth 的连接、以及长时间收不到任何帧（含 pong）的半开连接会被关闭。
+ * 同时提供连接数、发送积压等统计。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebSocketSessionMonitor {
+
+    @Value("${ws.heartbeat.interval-ms:25000}")
+    private long heartbeatIntervalMs;
+
+    @Value("${ws.auth-timeout-ms:10000}")
+    private long authTimeoutMs;
+
+    @Value("${ws.idle-timeout-ms:75000}")
+    private long idleTimeoutMs;
+
+    private final WebSocketSendDispatcher sendDispatcher;
+
+    private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+
+    private static class SessionState {
+        final WebSocketSession session;
+        final long connectedAt;
+        volatile long lastActiveAt;
+        volatile long lastPingAt;
+
+        SessionState(WebSocketSession session, long now) {
+            this.session = session;
+            this.connectedAt = now;
+            this.lastActiveAt = now;
+            this.lastPingAt = now;
+        }
+    }
+
+    public void opened(WebSocketSession session) {
+        sessions.put(session.getId(), new SessionState(session, System.currentTimeMillis()));
+    }
+
+    /**
+     * 收到客户端任意帧（消息或 pong）时刷新活跃时间
+     */
+    public void touch(WebSocketSession session) {
+        SessionState state = sessions.get(session.getId());
+        if (state != null) {
+            state.lastActiveAt = System.currentTimeMillis();
+        }
+    }
+
+    public void closed(WebSocketSession session) {
+        sessions.remove(session.getId());
+    }
+
+    @Scheduled(fixedDelayString = "${ws.heartbeat.check-interval-ms:5000}")
+    public void check() {
+        long now = System.currentTimeMillis();
+        for (SessionState state : sessions.values()) {
+            WebSocketSession session = state.session;
+            if (!session.isOpen()) {
+                sessions.remove(session.getId());
+                continue;
+            }
+            if (!isAuthed(session) && now - state.connectedAt > authTimeoutMs) {
+                close(session, CloseStatus.POLICY_VIOLATION.withReason("auth timeout"));
+                continue;
+            }
+            if (now - state.lastActiveAt > idleTimeoutMs) {
+                log.info("WebSocket 长时间无响应，关闭连接, sessionId={}", session.getId());
+                close(session, CloseStatus.SESSION_NOT_RELIABLE.withReason("idle"));
+                continue;
+            }
+            if (now - state.lastPingAt >= heartbeatIntervalMs) {
+                state.lastPingAt = now;
+                SessionOutbox outbox = sendDispatcher.outboxOf(session);
+                if (outbox != null) {
+                    outbox.ping();
+                }
+            }
+        }
+    }
+
+    /**
+     * 连接统计：在线会话、已认证会话、发送积压与丢弃数、每个用户的会话数
+     */
+    public Map<String, Object> stats() {
+        int authed = 0;
+        long pending = 0;
+        int maxPending = 0;
+        long dropped = 0;
+        Map<Long, Integer> perUser = new HashMap<>();
+        for (SessionState state : sessions.values()) {
+            WebSocketSession session = state.session;
+            Object userId = session.getAttributes().get("userId");
+            if (userId instanceof Long) {
+                authed++;
+                perUser.merge((Long) userId, 1, Integer::sum);
+            }
+            SessionOutbox outbox = sendDispatcher.outboxOf(session);
+            if (outbox != null) {
+                pending += outbox.getPending();
+                maxPending = Math.max(maxPending, outbox.getPending());
+                dropped += outbox.getDropped();
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", sessions.size());
+        stats.put("authedSessions", authed);
+        stats.put("users", perUser.size());
+        stats.put("sessionsPerUser", perUser);
+        stats.put("pendingFrames", pending);
+        stats.put("maxPendingFrames", maxPending);
+        stats.put("droppedFrames", dropped);
+        return stats;
+    }
+
+    private boolean isAuthed(WebSocketSession session) {
+        return session.getAttributes().get("userId") != null;
+    }
+
+    private void close(WebSocketSession session, CloseStatus status) {
+        sessions.remove(session.getId());
+        try {
+            session.close(status);
+        } catch (Exception e) {
+            log.debug("关闭 WebSocket 失败, sessionId={}", session.getId(), e);
+        }
+    }
+}
@@ -56,11 +56,45 @@ CREATE TABLE IF NOT EXISTS `moment_media` (
     `type` VARCHAR(10) NOT NULL COMMENT '类型: image/video',
     `url` VARCHAR(255) NOT NULL COMMENT '文件URL',
     `thumbnail` VARCHAR(255) DEFAULT NULL COMMENT '缩略图URL',
+    `display_url` VARCHAR(255) DEFAULT NULL COMMENT '展示图URL（最长边1600）',
     `sort` INT DEFAULT 0 COMMENT '排序',
     `created_at` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     INDEX `idx_moment_id` (`moment_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='动态媒体表';
 
+-- 图片衍生图任务表（缩略图/展示图异步生成）
+CREATE TABLE IF NOT EXISTS `media_derivative_task` (
+    `id` BIGINT PRIMARY KEY AUTO_INCREMENT COMMENT '任务ID',
+    `media_id` BIGINT NOT NULL COMMENT '动态媒体ID',
+    `source_url` VARCHAR(255) NOT NULL COMMENT '原图URL',
+    `status` VARCHAR(20) NOT NULL DEFAULT 'PENDING' COMMENT '状态: PENDING/RUNNING/DONE/FAILED',
+    `attempts` INT NOT NULL DEFAULT 0 COMMENT '已尝试次数',
+    `last_error` VARCHAR(255) DEFAULT NULL COMMENT '最近一次错误',
+    `claimed_by` VARCHAR(64) DEFAULT NULL COMMENT '认领节点',
+    `claimed_at` DATETIME DEFAULT NULL COMMENT '认领时间',
+    `created_at` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    INDEX `idx_status_id` (`status`, `id`),
+    INDEX `idx_media_id` (`media_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='图片衍生图任务表';
+
+-- 媒体对象表（按内容去重，引用计数）
+CREATE TABLE IF NOT EXISTS `media_object` (
+    `id` BIGINT PRIMARY KEY AUTO_INCREMENT COMMENT '对象ID',
+    `content_hash` CHAR(64) NOT NULL COMMENT '内容SHA-256',
+    `object_key` VARCHAR(255) NOT NULL COMMENT '存储对象key',
+    `url` VARCHAR(255) NOT NULL COMMENT '访问URL',
+    `size` BIGINT NOT NULL DEFAULT 0 COMMENT '文件大小（字节）',
+    `content_type` VARCHAR(100) DEFAULT NULL COMMENT '文件类型',
+    `ref_count` INT NOT NULL DEFAULT 0 COMMENT '引用次数',
+    `last_used_at` DATETIME NOT NULL COMMENT '最近上传命中时间',
+    `created_at` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    UNIQUE KEY `uk_content_hash` (`content_hash`),
+    UNIQUE KEY `uk_object_key` (`object_key`),
+    INDEX `idx_ref_count_last_used` (`ref_count`, `last_used_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='媒体对象表（按内容去重）';
+
 -- 评论表
 CREATE TABLE IF NOT EXISTS `comment` (
     `id` BIGINT PRIMARY KEY AUTO_INCREMENT COMMENT '评论ID',
@@ -101,7 +135,8 @@ CREATE TABLE IF NOT EXISTS `diary` (
     `deleted` TINYINT DEFAULT 0 COMMENT '是否删除',
     INDEX `idx_space_id` (`space_id`),
     INDEX `idx_user_id` (`user_id`),
-    INDEX `idx_diary_date` (`diary_date`)
+    INDEX `idx_diary_date` (`diary_date`),
+    INDEX `idx_space_date_user` (`space_id`, `diary_date`, `user_id`, `visibility`, `mood`, `deleted`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='日记表';
 
 -- 纪念日表
@@ -116,17 +151,21 @@ CREATE TABLE IF NOT EXISTS `anniversary` (
     `remind` TINYINT DEFAULT 1 COMMENT '是否提醒',
     `remind_days` INT DEFAULT 0 COMMENT '提前几天提醒',
     `icon` VARCHAR(50) DEFAULT '❤️' COMMENT '图标',
+    `next_occurrence_date` DATE DEFAULT NULL COMMENT '下一次发生日期',
+    `last_reminded_for` DATE DEFAULT NULL COMMENT '已提醒的发生日期',
     `created_at` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     `deleted` TINYINT DEFAULT 0 COMMENT '是否删除',
     INDEX `idx_space_id` (`space_id`),
-    INDEX `idx_date` (`date`)
+    INDEX `idx_date` (`date`),
+    INDEX `idx_space_next_occurrence` (`space_id`, `next_occurrence_date`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='纪念日表';
 
 -- 聊天消息表（双人私聊）
 CREATE TABLE IF NOT EXISTS `chat_message` (
     `id` BIGINT PRIMARY KEY AUTO_INCREMENT COMMENT '消息ID',
     `space_id` BIGINT NOT NULL COMMENT '空间ID',
+    `conversation_id` VARCHAR(41) NOT NULL COMMENT '会话键：双方用户ID小的在前，如 3_8',
     `from_user_id` BIGINT NOT NULL COMMENT '发送方用户ID',
     `to_user_id` BIGINT NOT NULL COMMENT '接收方用户ID',
     `type` VARCHAR(20) NOT NULL COMMENT '消息类型: text/image/audio/sticker',
@@ -134,12 +173,30 @@ CREATE TABLE IF NOT EXISTS `chat_message` (
     `media_url` VARCHAR(255) DEFAULT NULL COMMENT '媒体文件URL（图片/语音等）',
     `extra` JSON DEFAULT NULL COMMENT '扩展字段，如 {"duration":12}',
     `status` VARCHAR(20) NOT NULL DEFAULT 'sent' COMMENT '状态: sent/read',
-    `created_at` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '发送时间',
+    `created_at` DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3) COMMENT '发送时间',
     INDEX `idx_space_id` (`space_id`),
+    INDEX `idx_conversation_id` (`conversation_id`, `id`),
+    INDEX `idx_conversation_time` (`conversation_id`, `created_at`, `id`),
     INDEX `idx_user_pair_time` (`from_user_id`, `to_user_id`, `created_at`),
     INDEX `idx_to_user_time` (`to_user_id`, `created_at`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='聊天消息表';
 
+-- ID 序列表（按段分配，如聊天消息ID）
+CREATE TABLE IF NOT EXISTS `id_sequence` (
+    `name` VARCHAR(50) PRIMARY KEY COMMENT '序列名',
+    `next_id` BIGINT NOT NULL COMMENT '下一个未分配的ID'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='ID序列表';
+
+-- 聊天已读水位表
+CREATE TABLE IF NOT EXISTS `chat_read_state` (
+    `id` BIGINT PRIMARY KEY AUTO_INCREMENT COMMENT 'ID',
+    `user_id` BIGINT NOT NULL COMMENT '读者用户ID',
+    `conversation_id` VARCHAR(41) NOT NULL COMMENT '会话键',
+    `last_read_message_id` BIGINT NOT NULL DEFAULT 0 COMMENT '已读水位（消息ID）',
+    `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    UNIQUE KEY `uk_user_conversation` (`user_id`, `conversation_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='聊天已读水位表';
+
 -- ==========================================
 -- 初始化数据
 -- ==========================================
@@ -96,6 +96,7 @@ const api = {
   diary: {
     getList: (pageNum = 1, pageSize = 10) => http.get('/diaries', { params: { pageNum, pageSize } }),
     getByMonth: (year, month) => http.get('/diaries/month', { params: { year, month } }),
+    getCalendar: (year, month) => http.get('/diaries/calendar', { params: { year, month } }),
     getByDate: (date) => http.get('/diaries/date', { params: { date } }),
     getDetail: (id) => http.get(`/diaries/${id}`),
     write: (data) => http.post('/diaries', data),
@@ -120,7 +121,14 @@ const api = {
       return http.post('/files/upload', formData, {
         headers: { 'Content-Type': 'multipart/form-data' }
       })
-    }
+    },
+    // 请求体直接是文件内容，服务端边收边写入存储
+    uploadStream: (file) => http.post('/files/stream', file, {
+      headers: {
+        'Content-Type': file.type || 'application/octet-stream',
+        'X-File-Name': encodeURIComponent(file.name || '')
+      }
+    })
   },
 
   chat: {
@@ -130,7 +138,18 @@ const api = {
         size
       }
     }),
-    markRead: () => http.post('/chat/read')
+    messages: (cursor, size = 20) => http.get('/chat/messages', {
+      params: {
+        cursor,
+        size
+      }
+    }),
+    markRead: upToId => http.post('/chat/read', null, {
+      params: {
+        upToId
+      }
+    }),
+    unread: () => http.get('/chat/unread')
   },
 
   space: {
@@ -1,7 +1,66 @@
 import { defineStore } from 'pinia'
 import { ref } from 'vue'
+import { showToast } from 'vant'
 import api from '../api'
 
+// 紧凑协议的短键，需与后端 ChatFrameCodec 保持一致
+const LONG_KEYS = {
+  e: 'event',
+  i: 'id',
+  f: 'fromUserId',
+  t: 'toUserId',
+  y: 'type',
+  c: 'content',
+  m: 'mediaUrl',
+  x: 'extra',
+  s: 'status',
+  a: 'createdAt',
+  k: 'clientId',
+  r: 'readerId',
+  p: 'partnerId',
+  l: 'lastReadId',
+  ms: 'messages',
+  d: 'done',
+  tr: 'truncated',
+  u: 'unread',
+  g: 'message',
+  ui: 'userId',
+  o: 'online',
+  ty: 'typing',
+  ai: 'anniversaryId',
+  ti: 'title',
+  ic: 'icon',
+  dt: 'date',
+  dl: 'daysLeft'
+}
+
+const pad = n => String(n).padStart(2, '0')
+
+// 与接口返回的 LocalDateTime 格式一致
+const formatLocalDateTime = millis => {
+  const d = new Date(millis)
+  const ms = String(d.getMilliseconds()).padStart(3, '0')
+  return `${d.getFullYear()}-${pad(d.getMonth() + 1)}-${pad(d.getDate())}T${pad(d.getHours())}:${pad(d.getMinutes())}:${pad(d.getSeconds())}.${ms}`
+}
+
+// 多实例时各节点按段分配ID，ID 不代表发送顺序，消息按 (发送时间, ID) 排序
+const compareMessages = (a, b) => {
+  const diff = new Date(a.createdAt).getTime() - new Date(b.createdAt).getTime()
+  return diff || a.id - b.id
+}
+
+const expandFrame = node => {
+  if (Array.isArray(node)) return node.map(expandFrame)
+  if (!node || typeof node !== 'object') return node
+  const result = {}
+  Object.keys(node).forEach(key => {
+    const name = LONG_KEYS[key] || key
+    const value = node[key]
+    result[name] = name === 'createdAt' && typeof value === 'number' ? formatLocalDateTime(value) : expandFrame(value)
+  })
+  return result
+}
+
 export const useChatStore = defineStore('chat', () => {
   const connected = ref(false)
   const connecting = ref(false)
@@ -16,11 +75,16 @@ export const useChatStore = defineStore('chat', () => {
   const lastDisconnectAt = ref(null)
   const lastClose = ref(null)
   const lastAttemptUrl = ref(null)
+  const partnerOnline = ref(false)
+  const partnerTyping = ref(false)
 
   let reconnectTimer = null
   let reconnectAttempts = 0
   let manualClose = false
   let listenersBound = false
+  let typingTimer = null
+  let typingSent = false
+  let lastTypingAt = 0
 
   const getCurrentUserId = () => {
     try {
@@ -107,33 +171,56 @@ export const useChatStore = defineStore('chat', () => {
       const socket = new WebSocket(url)
 
       let authed = false
+      let compact = false
 
       socket.onopen = () => {
         ws.value = socket
         try {
-          socket.send(JSON.stringify({ type: 'auth', token }))
+          // 带上已有的最新消息ID，服务端补发断线期间错过的消息
+          socket.send(JSON.stringify({ type: 'auth', token, lastSeenId: getLastSeenId(), proto: 'compact' }))
         } catch (e) {
           socket.close()
         }
       }
 
+      const handlePayload = payload => {
+        if (payload.event === 'auth') {
+          if (payload.status === 'ok') {
+            authed = true
+            compact = payload.proto === 'compact'
+            connected.value = true
+            connecting.value = false
+            reconnecting.value = false
+            reconnectAttempts = 0
+          } else {
+            socket.close()
+          }
+        } else if (payload.event === 'sync') {
+          handleSyncEvent(payload)
+        } else if (payload.event === 'presence') {
+          handlePresenceEvent(payload)
+        } else if (payload.event === 'read') {
+          handleReadEvent(payload)
+        } else if (payload.event === 'reminder') {
+          const when = payload.daysLeft > 0 ? `还有 ${payload.daysLeft} 天` : '就是今天'
+          showToast(`${payload.icon || '💕'} ${payload.title} ${when}`)
+        } else if (payload.event === 'error') {
+          showToast(payload.message || '消息发送失败')
+        } else {
+          appendMessage(payload)
+        }
+      }
+
       socket.onmessage = event => {
         try {
           const payload = JSON.parse(event.data)
-          if (payload.event === 'auth') {
-            if (payload.status === 'ok') {
-              authed = true
-              connected.value = true
-              connecting.value = false
-              reconnecting.value = false
-              reconnectAttempts = 0
-            } else {
-              socket.close()
-            }
-          } else if (payload.event === 'read') {
-            handleReadEvent(payload)
+          // 逐条解码：认证响应可能与之后的紧凑帧合并在同一个数组里
+          const handleFrame = frame => handlePayload(compact ? expandFrame(frame) : frame)
+          // 服务端积压时会把多条消息合并成一个数组发送
+          if (Array.isArray(payload)) {
+            payload.forEach(handleFrame)
           } else {
-            appendMessage(payload)
+            handleFrame(payload)
           }
         } catch (e) {
         }
@@ -183,11 +270,25 @@ export const useChatStore = defineStore('chat', () => {
     tryConnect(0)
   }
 
+  // 按发送时间最后一条消息的ID，服务端据此定位补发起点
+  const getLastSeenId = () => {
+    const seen = messages.value.filter(m => typeof m.id === 'number')
+    return seen.length ? seen[seen.length - 1].id : null
+  }
+
+  // 补发的消息不计入未读，未读数以同步结束时服务端给出的为准
+  const mergeMessages = list => {
+    const existingIds = new Set(messages.value.map(m => m.id))
+    const added = list.filter(m => !existingIds.has(m.id))
+    if (!added.length) return
+    messages.value = [...messages.value, ...added].sort(compareMessages)
+  }
+
   const appendMessage = msg => {
     const exists = messages.value.find(m => m.id === msg.id)
     if (exists) return
     messages.value.push(msg)
-    messages.value.sort((a, b) => a.id - b.id)
+    messages.value.sort(compareMessages)
     const currentUserId = getCurrentUserId()
     if (currentUserId && msg.toUserId === currentUserId && !active.value) {
       unreadCount.value += 1
@@ -196,11 +297,52 @@ export const useChatStore = defineStore('chat', () => {
 
   const sendMessage = payload => {
     if (!connected.value || !ws.value || ws.value.readyState !== WebSocket.OPEN) return
-    ws.value.send(JSON.stringify(payload))
+    // clientId 用于对应服务端的落库确认或失败通知
+    const clientId = `${Date.now()}-${Math.random().toString(36).slice(2, 8)}`
+    ws.value.send(JSON.stringify({ ...payload, clientId }))
+  }
+
+  // 输入中状态：开始输入时发一次，之后每 3 秒续一次，停止输入 3 秒后发送结束
+  const notifyTyping = () => {
+    if (!connected.value || !ws.value || ws.value.readyState !== WebSocket.OPEN) return
+    const now = Date.now()
+    if (!typingSent || now - lastTypingAt > 3000) {
+      ws.value.send(JSON.stringify({ type: 'typing', typing: true }))
+      typingSent = true
+      lastTypingAt = now
+    }
+    if (typingTimer) clearTimeout(typingTimer)
+    typingTimer = setTimeout(stopTyping, 3000)
+  }
+
+  const stopTyping = () => {
+    if (typingTimer) {
+      clearTimeout(typingTimer)
+      typingTimer = null
+    }
+    if (!typingSent) return
+    typingSent = false
+    if (ws.value && ws.value.readyState === WebSocket.OPEN) {
+      ws.value.send(JSON.stringify({ type: 'typing', typing: false }))
+    }
+  }
+
+  let partnerTypingTimer = null
+  const handlePresenceEvent = payload => {
+    partnerOnline.value = !!payload.online
+    partnerTyping.value = !!payload.typing
+    // 对方断网时收不到结束通知，超时自动清除
+    if (partnerTypingTimer) clearTimeout(partnerTypingTimer)
+    if (partnerTyping.value) {
+      partnerTypingTimer = setTimeout(() => {
+        partnerTyping.value = false
+      }, 6000)
+    }
   }
 
   const sendText = content => {
     if (!content || !content.trim()) return
+    stopTyping()
     sendMessage({
       type: 'text',
       content: content.trim()
@@ -220,17 +362,16 @@ export const useChatStore = defineStore('chat', () => {
     if (loadingHistory.value || !hasMore.value) return
     loadingHistory.value = true
     try {
-      const beforeId = messages.value.length > 0 ? messages.value[0].id : null
-      const res = await api.chat.history(beforeId, 20)
+      const cursor = messages.value.length > 0 ? messages.value[0].id : null
+      const res = await api.chat.messages(cursor, 20)
       if (res.code === 200) {
-        const list = res.data || []
-        if (list.length === 0) {
-          hasMore.value = false
-        } else {
+        const page = res.data || {}
+        const list = page.messages || []
+        hasMore.value = !!page.hasMore
+        if (list.length > 0) {
+          // 服务端按 id 升序返回，且都早于当前最早一条，直接拼在前面
           const existingIds = new Set(messages.value.map(m => m.id))
-          const merged = [...list.filter(m => !existingIds.has(m.id)), ...messages.value]
-          merged.sort((a, b) => a.id - b.id)
-          messages.value = merged
+          messages.value = [...list.filter(m => !existingIds.has(m.id)), ...messages.value]
         }
       }
     } finally {
@@ -238,17 +379,34 @@ export const useChatStore = defineStore('chat', () => {
     }
   }
 
+  // 已读水位：对方读到 lastReadId，自己发出且不超过水位的消息都已读
   const handleReadEvent = payload => {
-    const ids = Array.isArray(payload.messageIds) ? payload.messageIds : []
-    if (!ids.length) return
-    const set = new Set(ids)
+    const lastReadId = Number(payload.lastReadId)
+    if (!lastReadId) return
     messages.value.forEach(m => {
-      if (set.has(m.id)) {
+      if (m.fromUserId !== payload.readerId && m.id <= lastReadId) {
         m.status = 'read'
       }
     })
   }
 
+  const handleSyncEvent = payload => {
+    if (Array.isArray(payload.messages) && payload.messages.length) {
+      mergeMessages(payload.messages)
+    }
+    if (!payload.done) return
+    if (payload.truncated) {
+      // 缺口过大，丢弃本地列表重新拉取最新一页
+      messages.value = []
+      hasMore.value = true
+      loadHistory()
+    }
+    handleReadEvent(payload)
+    if (!active.value) {
+      unreadCount.value = Number(payload.unread) || 0
+    }
+  }
+
   const reset = () => {
     manualClose = true
     clearReconnectTimer()
@@ -270,6 +428,8 @@ export const useChatStore = defineStore('chat', () => {
     active.value = false
     unreadCount.value = 0
     lastDisconnectAt.value = null
+    partnerOnline.value = false
+    partnerTyping.value = false
   }
 
   const setActive = flag => {
@@ -291,7 +451,10 @@ export const useChatStore = defineStore('chat', () => {
     loadingHistory,
     hasMore,
     unreadCount,
+    partnerOnline,
+    partnerTyping,
     connect,
+    notifyTyping,
     sendText,
     sendMedia,
     loadHistory,
@@ -0,0 +1,13 @@
+// 按开始日期（当天 0 点，本地时间）计算在一起的天、时、分、秒，与后端 DashboardService 的算法一致
+export const togetherSince = (startDate, now = Date.now()) => {
+  if (!startDate) return null
+  const [year, month, day] = String(startDate).split('-').map(Number)
+  const start = new Date(year, month - 1, day).getTime()
+  const totalSeconds = Math.max(0, Math.floor((now - start) / 1000))
+  return {
+    days: Math.floor(totalSeconds / 86400),
+    hours: Math.floor((totalSeconds % 86400) / 3600),
+    minutes: Math.floor((totalSeconds % 3600) / 60),
+    seconds: totalSeconds % 60
+  }
+}